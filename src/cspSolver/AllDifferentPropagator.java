@@ -0,0 +1,299 @@
+package cspSolver;
+
+import java.util.Arrays;
+
+/**
+ * Generalized arc consistency for the not-equals constraints of a network,
+ * treating each one as an AllDifferent (Regin's algorithm).
+ *
+ * For a constraint over k variables the variables are matched to distinct values
+ * of their domains. If no matching covers every variable the constraint fails.
+ * Otherwise a value v is removed from the domain of x unless (x, v) is in the matching,
+ * x and v lie in the same strongly connected component of the residual graph, or
+ * v can reach a free value. The residual graph points from each variable to the
+ * unmatched values of its domain and from each matched value to its variable.
+ *
+ * The matching of every constraint is kept between calls and only repaired for
+ * variables that lost their matched value. Undoing a change only adds values
+ * back, so a kept matching never becomes wrong, only incomplete.
+ * All working arrays are allocated up front.
+ */
+public class AllDifferentPropagator extends ConstraintPropagator {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int maxValue;
+
+	// per constraint: ids of its variables, and the value matched to each, 0 if none
+	private final int[][] varIds;
+	private final int[][] matchedValue;
+
+	// working arrays for one constraint, indexed by position in the constraint or by value
+	private final int[] matchOfValue;
+	private final int[] visited;
+	private int stamp;
+	private final boolean[] reachesFree;
+	private final int[] valueQueue;
+
+	// Tarjan, nodes 0..k-1 are variables and k..k+maxValue-1 the values 1..maxValue
+	private final int[] index;
+	private final int[] lowLink;
+	private final int[] component;
+	private final int[] stack;
+	private final boolean[] onStack;
+	private int stackSize;
+	private int nextIndex;
+	private int numComponents;
+
+	private long numRemovals;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param network network whose constraints are propagated. Its constraints and
+	 * variables must not change afterwards.
+	 */
+	public AllDifferentPropagator(ConstraintNetwork network)
+	{
+		super(network);
+		maxValue = network.getMaxValue();
+
+		int numConstraints = network.getConstraints().size();
+		varIds = new int[numConstraints][];
+		matchedValue = new int[numConstraints][];
+		int maxArity = 0;
+		for(Constraint c : network.getConstraints())
+		{
+			int[] ids = new int[c.size()];
+			for(int i = 0; i < ids.length; i++)
+			{
+				ids[i] = c.vars.get(i).getId();
+			}
+			varIds[c.getId()] = ids;
+			matchedValue[c.getId()] = new int[ids.length];
+			maxArity = Math.max(maxArity, ids.length);
+		}
+
+		matchOfValue = new int[maxValue + 1];
+		visited = new int[maxValue + 1];
+		reachesFree = new boolean[maxValue + 1];
+		valueQueue = new int[maxValue];
+
+		int numNodes = maxArity + maxValue;
+		index = new int[numNodes];
+		lowLink = new int[numNodes];
+		component = new int[numNodes];
+		stack = new int[numNodes];
+		onStack = new boolean[numNodes];
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return number of values removed from domains so far
+	 */
+	public long getNumRemovals()
+	{
+		return numRemovals;
+	}
+
+	//===============================================================================
+	// Propagation
+	//===============================================================================
+
+	/**
+	 * Makes one constraint generalized arc consistent.
+	 * @param cId id of the constraint
+	 * @return false if its variables cannot all take different values, true otherwise
+	 */
+	@Override
+	public boolean propagate(int cId)
+	{
+		int[] ids = varIds[cId];
+		int[] match = matchedValue[cId];
+		int k = ids.length;
+
+		// keep the matched pairs that are still possible
+		Arrays.fill(matchOfValue, -1);
+		for(int i = 0; i < k; i++)
+		{
+			int value = match[i];
+			if(value != 0 && domainOf(ids[i]).contains(value))
+			{
+				matchOfValue[value] = i;
+			}
+			else
+			{
+				match[i] = 0;
+			}
+		}
+
+		// augment the others
+		for(int i = 0; i < k; i++)
+		{
+			if(match[i] == 0)
+			{
+				stamp++;
+				if(!augment(ids, match, i))
+				{
+					return false;
+				}
+			}
+		}
+
+		markValuesReachingFree(ids, match);
+		findComponents(ids, match);
+
+		for(int i = 0; i < k; i++)
+		{
+			Variable v = network.getVariable(ids[i]);
+			Domain d = v.getDomain();
+			for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+			{
+				if(value != match[i] && !reachesFree[value] && component[i] != component[k + value - 1])
+				{
+					v.removeValueFromDomain(value);
+					numRemovals++;
+				}
+			}
+		}
+		return true;
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	private Domain domainOf(int id)
+	{
+		return network.getVariable(id).getDomain();
+	}
+
+	/**
+	 * Looks for an alternating path from variable i to a free value and flips it.
+	 */
+	private boolean augment(int[] ids, int[] match, int i)
+	{
+		Domain d = domainOf(ids[i]);
+		for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+		{
+			if(visited[value] == stamp)
+			{
+				continue;
+			}
+			visited[value] = stamp;
+			if(matchOfValue[value] == -1 || augment(ids, match, matchOfValue[value]))
+			{
+				match[i] = value;
+				matchOfValue[value] = i;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Walks the residual graph backwards from the free values. A value that reaches
+	 * a free value supports every variable pointing at it.
+	 */
+	private void markValuesReachingFree(int[] ids, int[] match)
+	{
+		Arrays.fill(reachesFree, false);
+		int head = 0, tail = 0;
+		for(int value = 1; value <= maxValue; value++)
+		{
+			if(matchOfValue[value] == -1)
+			{
+				reachesFree[value] = true;
+				valueQueue[tail++] = value;
+			}
+		}
+		while(head < tail)
+		{
+			int value = valueQueue[head++];
+			for(int i = 0; i < ids.length; i++)
+			{
+				int previous = match[i];
+				if(previous != value && !reachesFree[previous] && domainOf(ids[i]).contains(value))
+				{
+					reachesFree[previous] = true;
+					valueQueue[tail++] = previous;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tarjan's algorithm over the residual graph of one constraint.
+	 */
+	private void findComponents(int[] ids, int[] match)
+	{
+		int numNodes = ids.length + maxValue;
+		Arrays.fill(index, 0, numNodes, -1);
+		stackSize = 0;
+		nextIndex = 0;
+		numComponents = 0;
+		for(int node = 0; node < numNodes; node++)
+		{
+			if(index[node] == -1)
+			{
+				strongConnect(ids, match, node);
+			}
+		}
+	}
+
+	private void strongConnect(int[] ids, int[] match, int node)
+	{
+		int k = ids.length;
+		index[node] = lowLink[node] = nextIndex++;
+		stack[stackSize++] = node;
+		onStack[node] = true;
+
+		if(node < k)
+		{
+			Domain d = domainOf(ids[node]);
+			for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+			{
+				if(value != match[node])
+				{
+					visit(ids, match, node, k + value - 1);
+				}
+			}
+		}
+		else if(matchOfValue[node - k + 1] != -1)
+		{
+			visit(ids, match, node, matchOfValue[node - k + 1]);
+		}
+
+		if(lowLink[node] == index[node])
+		{
+			int member;
+			do
+			{
+				member = stack[--stackSize];
+				onStack[member] = false;
+				component[member] = numComponents;
+			} while(member != node);
+			numComponents++;
+		}
+	}
+
+	private void visit(int[] ids, int[] match, int node, int successor)
+	{
+		if(index[successor] == -1)
+		{
+			strongConnect(ids, match, successor);
+			lowLink[node] = Math.min(lowLink[node], lowLink[successor]);
+		}
+		else if(onStack[successor])
+		{
+			lowLink[node] = Math.min(lowLink[node], index[successor]);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package cspSolver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs solvers in the background and hands back a {@link CompletableFuture} instead
+ * of a thread to join and interrupt. Every solve takes a deadline, which the solvers
+ * poll at every search node and propagation queue item, so they stop within about
+ * a millisecond of it, even in the middle of a long propagation pass.
+ *
+ * A future completes with its solver once the solver stops, so the solution and
+ * statistics are read from the solver. It completes with a {@link TimeoutException}
+ * if the deadline passed before a solution was found. Cancelling the future moves
+ * the deadline to now, which stops the solver at its next check.
+ *
+ * Solver threads mostly wait on nothing, so one thread per solve is fine. The
+ * default executor starts a daemon thread per solve and reuses idle ones. On Java 21
+ * or later, pass Executors.newVirtualThreadPerTaskExecutor() to the constructor
+ * to run every solve on a virtual thread instead.
+ */
+public class AsyncSolver {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final Executor executor;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	public AsyncSolver()
+	{
+		this(defaultExecutor());
+	}
+
+	/**
+	 * @param executor runs the solves, one task per solve
+	 */
+	public AsyncSolver(Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	//===============================================================================
+	// Solver
+	//===============================================================================
+
+	/**
+	 * @param solver configured solver to run
+	 * @param deadline System.currentTimeMillis() value by which to give up, {@link ConstraintNetwork#NO_DEADLINE} for none
+	 * @return future of the solver once it has stopped
+	 */
+	public CompletableFuture<BTSolver> solve(BTSolver solver, long deadline)
+	{
+		solver.setDeadline(deadline);
+		return submit(solver, solver.getNetwork(), solver::solve, solver::hasSolution);
+	}
+
+	/**
+	 * @param solver solver to run
+	 * @param deadline System.currentTimeMillis() value by which to give up, {@link ConstraintNetwork#NO_DEADLINE} for none
+	 * @return future of the solver once it has stopped
+	 */
+	public CompletableFuture<LocalSolver> solve(LocalSolver solver, long deadline)
+	{
+		solver.setDeadline(deadline);
+		return submit(solver, solver.getNetwork(), solver::solve, solver::hasSolution);
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * @param network network of the solver, whose deadline is moved on cancel
+	 * @param solve starts the solver
+	 * @param solved tells whether the solver found a solution
+	 */
+	private <S> CompletableFuture<S> submit(final S solver, final ConstraintNetwork network, final Runnable solve, final BooleanSupplier solved)
+	{
+		final CompletableFuture<S> future = new CompletableFuture<S>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning)
+			{
+				network.setDeadline(System.currentTimeMillis());
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(future.isDone())
+				{
+					return;
+				}
+				try {
+					solve.run();
+					if(!solved.getAsBoolean() && network.isPastDeadline())
+					{
+						future.completeExceptionally(new TimeoutException("Deadline passed before a solution was found"));
+					}
+					else
+					{
+						future.complete(solver);
+					}
+				}catch (Throwable t)
+				{
+					future.completeExceptionally(t);
+				}
+			}
+		});
+		return future;
+	}
+
+	private static ExecutorService defaultExecutor()
+	{
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "solver");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+}
@@ -4,22 +4,17 @@
 //ID: 70116153
 
 package cspSolver;
-import helper.MapUtil;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import sudoku.Converter;
 import sudoku.SudokuFile;
-import sun.awt.SunHints.Value;
 
 /**
  * Backtracking solver. 
@@ -32,36 +27,100 @@ public class BTSolver implements Runnable{
 	//===============================================================================
 
 	private ConstraintNetwork network;
-	private static Trail trail = Trail.getTrail();
+	private Trail trail;
 	private boolean hasSolution = false;
 	private SudokuFile sudokuGrid;
+	private SudokuFile puzzle;
+	
+	// the search stops once numSolutions reaches solutionLimit
+	private long solutionLimit = 1;
+	private long numSolutions;
+	private boolean limitReached = false;
 
 	private int numAssignments;
 	private int numBacktracks;
+	private long numRevisions;
 	private long startTime;
 	private long endTime;
+	private long peakTrailBytes;
 	
-	public enum VariableSelectionHeuristic 	{ None, MinimumRemainingValue, Degree };
+	public enum VariableSelectionHeuristic 	{ None, MinimumRemainingValue, Degree, IndexedMinimumRemainingValue, IndexedDegree, MinimumRemainingValueThenDegree, DomainOverWeightedDegree };
 	public enum ValueSelectionHeuristic 		{ None, LeastConstrainingValue };
-	public enum ConsistencyCheck				{ None, ForwardChecking, ArcConsistency };
-	public enum NakedCheck    { None, NakedPairs, NakedTriples };
+	public enum ConsistencyCheck				{ None, ForwardChecking, ArcConsistency, IncrementalArcConsistency, IncrementalForwardChecking, GeneralizedArcConsistency, Fish };
+	public enum NakedCheck    { None, NakedPairs, NakedTriples, HiddenSingles, NakedQuads, HiddenPairs, HiddenTriples, IntersectionReduction };
 	
 	private VariableSelectionHeuristic varHeuristics;
 	private ValueSelectionHeuristic valHeuristics;
 	private ConsistencyCheck cChecks;
 	 private NakedCheck nCheck;
+	private Trail.Mode trailMode = Trail.Mode.Delta;
+	
+	// assigned variables waiting to have their value removed from their neighbors
+	private RingQueue propagationQueue;
+	private AllDifferentPropagator allDifferent;
+	private NakedSubsetPropagator nakedSubsets;
+	private HiddenSubsetPropagator hiddenSubsets;
+	private IntersectionPropagator intersections;
+	private FishPropagator fish;
+	private int fishSize = 3;
+	private DomainSizeIndex domainSizes;
+	private DegreeIndex degrees;
+	// values left to try at each search depth, and counts scratch for LCV
+	private int[][] valueBuffers;
+	private int[] valueConflicts;
+	
+	private Domain.Representation representation;
+	// set when this solver searches a subtree for a ParallelBTSolver
+	private ParallelBTSolver parallel;
 	//===============================================================================
 	// Constructors
 	//===============================================================================
 
 	public BTSolver(SudokuFile sf)
 	{
-		this.network = Converter.SudokuFileToConstraintNetwork(sf);
+		this(sf, Domain.defaultRepresentation(sf.getN()));
+	}
+
+	/**
+	 * @param sf puzzle to solve
+	 * @param representation how the domains of the network's variables are stored
+	 */
+	public BTSolver(SudokuFile sf, Domain.Representation representation)
+	{
+		this.network = Converter.SudokuFileToConstraintNetwork(sf, representation);
+		this.trail = network.getTrail();
 		this.sudokuGrid = sf;
+		this.puzzle = sf;
+		this.representation = representation;
 		numAssignments = 0;
 		numBacktracks = 0;
 	}
 
+	/**
+	 * Copies the configuration and the current domains of another solver into a 
+	 * network of its own, so the copy can search on another thread while the 
+	 * original stays untouched. The network is cloned from the parent's, see
+	 * {@link ConstraintNetwork#ConstraintNetwork(ConstraintNetwork)}, rather than
+	 * built again from the puzzle. The copy's counters start at zero.
+	 * @param parent solver to copy, which must not change while it is being copied
+	 */
+	BTSolver(BTSolver parent)
+	{
+		this.network = new ConstraintNetwork(parent.network);
+		this.trail = network.getTrail();
+		this.sudokuGrid = parent.puzzle;
+		this.puzzle = parent.puzzle;
+		this.representation = parent.representation;
+		this.varHeuristics = parent.varHeuristics;
+		this.valHeuristics = parent.valHeuristics;
+		this.cChecks = parent.cChecks;
+		this.nCheck = parent.nCheck;
+		this.trailMode = parent.trailMode;
+		this.fishSize = parent.fishSize;
+		this.solutionLimit = parent.solutionLimit;
+		this.parallel = parent.parallel;
+	}
+
 	//===============================================================================
 	// Modifiers
 	//===============================================================================
@@ -76,16 +135,89 @@ public class BTSolver implements Runnable{
 		this.valHeuristics = vsh;
 	}
 	
+	/**
+	 * @param cc check to run after every assignment
+	 * @throws IllegalArgumentException if the check cannot handle a board this large
+	 */
 	public void setConsistencyChecks(ConsistencyCheck cc)
 	{
+		if(cc == ConsistencyCheck.Fish && !FishPropagator.supports(network))
+		{
+			throw new IllegalArgumentException(cc + " supports boards of up to " + Long.SIZE + " rows and columns");
+		}
 		this.cChecks = cc;
 	}
 	
 
-    public void setNakedConsistency(NakedCheck nck)
-    {
-            this.nCheck = nck;
-    }
+	/**
+	 * @param nck check to run after every assignment
+	 * @throws IllegalArgumentException if the check cannot handle a board this large
+	 */
+	public void setNakedConsistency(NakedCheck nck)
+	{
+		if(!supports(nck))
+		{
+			throw new IllegalArgumentException(nck + " supports boards of up to " + Long.SIZE + " values per row, column and block, got " 
+					+ Math.max(network.getMaxValue(), network.getMaxArity()));
+		}
+		this.nCheck = nck;
+	}
+
+	/**
+	 * @param size largest fish the Fish consistency check looks for: 2 for X-Wing, 
+	 * 3 for Swordfish (the default), 4 for Jellyfish
+	 */
+	public void setFishSize(int size)
+	{
+		if(size < 2 || size > FishPropagator.MAX_SIZE)
+		{
+			throw new IllegalArgumentException("Fish size must be in 2.." + FishPropagator.MAX_SIZE + ", got " + size);
+		}
+		this.fishSize = size;
+	}
+
+	/**
+	 * @param mode how the trail records changes, Delta by default
+	 */
+	public void setTrailMode(Trail.Mode mode)
+	{
+		this.trailMode = mode;
+	}
+
+	/**
+	 * Counting mode. The search keeps going after a solution until it has found 
+	 * <tt>limit</tt> of them or exhausted the tree; 2 is enough to tell whether a puzzle 
+	 * has zero, one or several solutions. Only the first solution is kept as a board, 
+	 * the others are just counted, see {@link #getNumSolutions()}.
+	 * @param limit number of solutions after which to stop, 1 (the default) to stop at the first
+	 */
+	public void setSolutionLimit(long limit)
+	{
+		if(limit < 1)
+		{
+			throw new IllegalArgumentException("Solution limit must be at least 1, got " + limit);
+		}
+		this.solutionLimit = limit;
+	}
+
+	/**
+	 * Makes the search and its propagators give up once the deadline passes. Polled at 
+	 * every node and every propagation queue item, so it may also be moved from another 
+	 * thread to cancel a running solve, see {@link ConstraintNetwork#setDeadline(long)}.
+	 * @param deadline System.currentTimeMillis() value, {@link ConstraintNetwork#NO_DEADLINE} for none
+	 */
+	public void setDeadline(long deadline)
+	{
+		network.setDeadline(deadline);
+	}
+
+	/**
+	 * @param parallel solver that hands out the subtrees near the root, null to search sequentially
+	 */
+	void setParallel(ParallelBTSolver parallel)
+	{
+		this.parallel = parallel;
+	}
 	//===============================================================================
 	// Accessors
 	//===============================================================================
@@ -106,11 +238,38 @@ public class BTSolver implements Runnable{
 		return sudokuGrid;
 	}
 
+	/**
+	 * @return number of solutions found, at most the solution limit. Equal to the number 
+	 * of solutions of the puzzle if it is below the limit and the search was not cut short.
+	 */
+	public long getNumSolutions()
+	{
+		return numSolutions;
+	}
+
 	public void printSolverStats()
 	{
 		System.out.println("Time taken:" + (endTime-startTime) + " ms");
 		System.out.println("Number of assignments: " + numAssignments);
 		System.out.println("Number of backtracks: " + numBacktracks);
+		if(solutionLimit > 1)
+		{
+			System.out.println("Number of solutions: " + numSolutions + " (limit " + solutionLimit + ")");
+		}
+		System.out.println("Number of arc revisions: " + numRevisions);
+		System.out.println("Peak trail size: " + peakTrailBytes + " bytes (" + trailMode + ")");
+		if(fish != null)
+		{
+			long calls = Math.max(1, fish.getNumCalls());
+			System.out.println("Fish: " + fish.getNumRemovals() + " values removed by " 
+					+ fish.getNumFish() + " fish, " + (fish.getNanos() / calls) + " ns per call");
+		}
+		if(hiddenSubsets != null)
+		{
+			long calls = Math.max(1, hiddenSubsets.getNumCalls());
+			System.out.println("Hidden subsets: " + hiddenSubsets.getNumRemovals() + " values removed by " 
+					+ hiddenSubsets.getNumSubsets() + " subsets, " + (hiddenSubsets.getNanos() / calls) + " ns per node");
+		}
 	}
 
 	/**
@@ -131,6 +290,22 @@ public class BTSolver implements Runnable{
 	{
 		return numBacktracks;
 	}
+	
+	/**
+	 * @return number of arcs revised by ArcConsistency and the incremental checks
+	 */
+	public long getNumRevisions()
+	{
+		return numRevisions;
+	}
+
+	/**
+	 * @return approximate largest amount of memory held by the trail during the last solve, in bytes
+	 */
+	public long getPeakTrailBytes()
+	{
+		return peakTrailBytes;
+	}
 
 	public ConstraintNetwork getNetwork()
 	{
@@ -143,9 +318,10 @@ public class BTSolver implements Runnable{
 
 	/**
 	 * Checks whether the changes from the last time this method was called are consistent. 
+	 * @param decision the variable that was just assigned
 	 * @return true if consistent, false otherwise
 	 */
-	private boolean checkConsistency()
+	private boolean checkConsistency(Variable decision)
 	{
 		boolean isConsistent = false;
 		switch(cChecks)
@@ -156,6 +332,14 @@ public class BTSolver implements Runnable{
 		break;
 		case ArcConsistency: 	isConsistent = arcConsistency();
 		break;
+		case IncrementalArcConsistency: isConsistent = incrementalArcConsistency();
+		break;
+		case IncrementalForwardChecking: isConsistent = incrementalForwardChecking(decision);
+		break;
+		case GeneralizedArcConsistency: isConsistent = generalizedArcConsistency();
+		break;
+		case Fish:				isConsistent = fishChecking();
+		break;
 		default: 				isConsistent = assignmentsCheck();
 		break;
 		}
@@ -173,9 +357,19 @@ public class BTSolver implements Runnable{
 		{
 			case None: 				isConsistent = true;
 			break;
-	        case NakedPairs:    isConsistent = nakedPairs();
+	        case NakedPairs:    isConsistent = nakedSubsets(2);
+	        break;
+	        case NakedTriples:    isConsistent = nakedSubsets(3);
 	        break;
-	        case NakedTriples:    isConsistent = nakedTriples();
+	        case NakedQuads:    isConsistent = nakedSubsets(4);
+	        break;
+	        case HiddenPairs:    isConsistent = hiddenSubsets(2);
+	        break;
+	        case HiddenTriples:    isConsistent = hiddenSubsets(3);
+	        break;
+	        case IntersectionReduction:    isConsistent = intersectionReduction();
+	        break;
+	        case HiddenSingles:    isConsistent = hiddenSingles();
 	        break;
 			default: 				isConsistent = true;
 			break;
@@ -233,6 +427,7 @@ public class BTSolver implements Runnable{
 				//variables are inconsistent and must backtrack
 				if(neighbor.isAssigned() && neighbor.getAssignment() == assignedVariable.getAssignment())
 				{
+					recordWipeout(assignedVariable, neighbor);
 					return false;
 				}
 			
@@ -244,6 +439,7 @@ public class BTSolver implements Runnable{
 				
 				if(neighbor.getDomain().isEmpty())
 				{
+					recordWipeout(assignedVariable, neighbor);
 					return false;
 				}
 								
@@ -273,11 +469,17 @@ public class BTSolver implements Runnable{
 		
 		while(!arcQ.isEmpty())
 		{
+			if(network.isPastDeadline())
+			{
+				return false;
+			}
 			Pair p = arcQ.removeFirst();
+			numRevisions++;
 			if(RemoveInconsistentValues(p.getFirstValue(), p.getSecondValue()))
 			{
 				if(p.getFirstValue().getDomain().isEmpty() || p.getSecondValue().getDomain().isEmpty())
 				{
+					recordWipeout(p.getSecondValue(), p.getFirstValue());
 					return false;
 				}
 				arcQ.addLast(p);
@@ -287,6 +489,155 @@ public class BTSolver implements Runnable{
 		return true;
 	}
 	
+	/**
+	 * Arc consistency seeded only from the variables modified since the last call.
+	 * 
+	 * Not-equals arcs can only prune when one end is assigned, so the queue holds
+	 * variables rather than arcs. Runs to a fixpoint, see {@link #propagateAssignments()}.
+	 * @return false if a domain is wiped out or two neighbors share an assignment, true otherwise
+	 */
+	private boolean incrementalArcConsistency()
+	{
+		RingQueue queue = getPropagationQueue();
+		for(int id = network.pollModifiedVariable(); id != -1; id = network.pollModifiedVariable())
+		{
+			if(network.getVariable(id).isModified())
+			{
+				queue.offer(id);
+			}
+		}
+		return propagateAssignments();
+	}
+	
+	/**
+	 * Forward checking from the variable that was just assigned. Only its neighbors
+	 * are pruned; a neighbor left with a single value is an implied assignment and
+	 * is pruned from in the same way, which forwardChecking would do at the next node.
+	 * @param decision the variable that was just assigned
+	 * @return false if a domain is wiped out, true otherwise
+	 */
+	private boolean incrementalForwardChecking(Variable decision)
+	{
+		getPropagationQueue().offer(decision.getId());
+		return propagateAssignments();
+	}
+	
+	/**
+	 * Drains the propagation queue. Each assigned variable taken off the queue has its 
+	 * value removed from its neighbors, and any neighbor left with a single value 
+	 * is queued in turn. Stops at the first wiped out domain.
+	 * @return false if a domain is wiped out or two neighbors share an assignment, true otherwise
+	 */
+	private boolean propagateAssignments()
+	{
+		RingQueue queue = getPropagationQueue();
+		while(!queue.isEmpty())
+		{
+			if(network.isPastDeadline())
+			{
+				queue.clear();
+				return false;
+			}
+			Variable v = network.getVariable(queue.poll());
+			v.setModified(false);
+			if(!v.isAssigned())
+			{
+				continue;
+			}
+			
+			int value = v.getAssignment();
+			for(int neighborId : network.getNeighborIds(v))
+			{
+				Variable neighbor = network.getVariable(neighborId);
+				numRevisions++;
+				if(!neighbor.getDomain().contains(value))
+				{
+					continue;
+				}
+				
+				neighbor.removeValueFromDomain(value);
+				if(neighbor.getDomain().isEmpty())
+				{
+					recordWipeout(v, neighbor);
+					queue.clear();
+					return false;
+				}
+				if(neighbor.isAssigned())
+				{
+					queue.offer(neighborId);
+				}
+				else
+				{
+					neighbor.setModified(false);
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Treats each constraint as an AllDifferent and makes every constraint with a
+	 * modified variable generalized arc consistent, see {@link AllDifferentPropagator}.
+	 * @return false if some constraint cannot be satisfied, true otherwise
+	 */
+	private boolean generalizedArcConsistency()
+	{
+		if(allDifferent == null)
+		{
+			allDifferent = new AllDifferentPropagator(network);
+		}
+		return allDifferent.propagate();
+	}
+	
+	/**
+	 * IncrementalArcConsistency and the naked check until neither removes a value, 
+	 * then fish up to the configured size, see {@link FishPropagator}. Repeats while 
+	 * the fish remove values, so the cheaper checks always reach a fixpoint before the 
+	 * fish run. The naked check runs here only; the callers skip it under Fish.
+	 * @return false if a domain is wiped out, true otherwise
+	 */
+	private boolean fishChecking()
+	{
+		if(fish == null)
+		{
+			fish = new FishPropagator(network, fishSize);
+		}
+		while(true)
+		{
+			long removals;
+			do
+			{
+				if(!incrementalArcConsistency())
+				{
+					return false;
+				}
+				removals = network.getNumRemovals();
+				if(!checkNakedConsistency())
+				{
+					return false;
+				}
+			} while(network.getNumRemovals() != removals);
+			
+			if(!fish.propagate())
+			{
+				return false;
+			}
+			if(network.getNumRemovals() == removals)
+			{
+				return true;
+			}
+		}
+	}
+	
+	private RingQueue getPropagationQueue()
+	{
+		if(propagationQueue == null)
+		{
+			propagationQueue = new RingQueue(network.getVariables().size());
+		}
+		return propagationQueue;
+	}
+	
 	private boolean RemoveInconsistentValues(Variable first, Variable second){
 		
 		if(first.getDomain().isEmpty() || second.getDomain().isEmpty())
@@ -321,7 +672,7 @@ public class BTSolver implements Runnable{
 	}
 	
 	
-	//inner class for pairs ~ used for nakedPairs()
+	//inner class for pairs ~ used for arcConsistency()
 	class Pair
 	{
 		private Variable[] arr;
@@ -372,465 +723,172 @@ public class BTSolver implements Runnable{
 	}
 	
 	/**
-	 * TODO: Implement naked pairs. 
+	 * @return true if the propagator behind the check can handle this solver's network
 	 */
-	private boolean nakedPairs()
+	private boolean supports(NakedCheck nck)
 	{
-		
-		//3rd attempt
-		List<Variable> variables = this.network.getVariables();
-		
-		//list of variables with 2 values exactly left in its domain
-		List<Variable> variable2Domain = new ArrayList<Variable>();
-		
-		//retrieve variables with domain size of 2
-		for(Variable variable : variables)
+		if(nck == null)
 		{
-			if(variable.getDomain().size() == 2)
-			{
-				variable2Domain.add(variable);
-			}
-		}
-		
-		//if no variable pairs were found, nakedConsistencyCheck passes
-		if(variable2Domain.isEmpty() || variable2Domain.size() == 1)
 			return true;
-	
-		//find 2 variables in the variable2Domain list that have the same exact values regardless of order.
-		Pair variablePair = new Pair();
-		Integer[] pairToMatch = new Integer[2];
-		
-		outerloop:
-		for(Variable firstVariable : variable2Domain)
-		{
-			for(Variable neighbor : this.network.getNeighborsOfVariable(firstVariable))
-			{	
-				if(neighbor.getDomain().size() != 2)
-					continue;
-				
-				Integer firstValue = neighbor.getDomain().getValues().get(0);
-				Integer secondValue = neighbor.getDomain().getValues().get(1);
-				if(firstVariable.getDomain().contains(firstValue) && firstVariable.getDomain().contains(secondValue))
-				{
-					variablePair.put(firstVariable, neighbor);
-					pairToMatch[0] = firstValue;
-					pairToMatch[1] = secondValue;
-					break outerloop;
-				}
-			}
 		}
-		
-		//there are no matching variable pairs.. don't do anything
-		if(variablePair.isNull())
-			return true;
-		
-		//identify if 2 variables are on the same box, row, or col (INCLUSIVE OR.. the 2 variables matching could be in the same row and box)
-		boolean areOnSameBlock = variablePair.getFirstValue().block() == variablePair.getSecondValue().block();
-		boolean areOnSameRow = variablePair.getFirstValue().row() == variablePair.getSecondValue().row();
-		boolean areOnSameCol = variablePair.getFirstValue().col() == variablePair.getSecondValue().col();
-		
-		//by default these values are -1 if 2 variables do not share a property checked below
-		int sharedBlock = -1;
-		int sharedRow = -1;
-		int sharedCol = -1;
-		
-		if(areOnSameBlock)
+		switch(nck)
 		{
-			sharedBlock = variablePair.getFirstValue().block();
-		}
-		
-		if(areOnSameRow)
-		{
-			sharedRow = variablePair.getFirstValue().row();
-		}
-		
-		if(areOnSameCol)
-		{
-			sharedCol = variablePair.getFirstValue().col();
-		}
-		
-		
-		//a unit is a box, row, or col that the variable pair share in common... where we search for when removing values from the domain.
-		Set<Variable> unit = new HashSet<Variable>();
-		
-		for(Variable candidate : this.network.getNeighborsOfVariable(variablePair.getFirstValue()))
-		{
-			if(candidate.isAssigned() || candidate == variablePair.getFirstValue() || candidate == variablePair.getSecondValue())
-				continue;
-			
-			if(areOnSameBlock && sharedBlock == candidate.block())
-				unit.add(candidate);
-			else if(areOnSameRow && sharedRow == candidate.row())
-				unit.add(candidate);
-			else if(areOnSameCol && sharedCol == candidate.col())
-				unit.add(candidate);
-		}
-		
-//		for(Variable candidate : this.network.getNeighborsOfVariable(variablePair.getSecondValue()))
-//		{
-//			if(areOnSameBlock && sharedBlock == candidate.block())
-//				unit.add(candidate);
-//			else if(areOnSameRow && sharedRow == candidate.row())
-//				unit.add(candidate);
-//			else if(areOnSameCol && sharedCol == candidate.col())
-//				unit.add(candidate);			
-//		}
-		
-		//remove values from unit if candidate's domain contains any value in variablePair
-		for(Variable candidate : unit)
-		{
-			if(candidate.getDomain().contains(pairToMatch[0]))
-				candidate.removeValueFromDomain(pairToMatch[0]);
-			
-			if(candidate.getDomain().contains(pairToMatch[1]))
-				candidate.removeValueFromDomain(pairToMatch[1]);
-			
-			if(candidate.getDomain().isEmpty())
-				return false;
+			case HiddenPairs:
+			case HiddenTriples:
+				return HiddenSubsetPropagator.supports(network);
+			case IntersectionReduction:
+				return IntersectionPropagator.supports(network);
+			default:
+				return true;
 		}
-		
-		return true;
 	}
-			
+	
 	/**
-	 * TODO: Implement naked triples.
-	 * 
+	 * Naked pairs, triples or quads within each row, column and block, see {@link NakedSubsetPropagator}.
+	 * @param maxSubsetSize largest subset size to look for
+	 * @return false if a domain is wiped out, true otherwise
 	 */
-	
-	class Triple
+	private boolean nakedSubsets(int maxSubsetSize)
 	{
-		private Variable[] arr;
-		
-		public Triple()
+		if(nakedSubsets == null)
 		{
-			arr = new Variable[3];
+			nakedSubsets = new NakedSubsetPropagator(network, maxSubsetSize);
 		}
-		
-		public Triple(Variable firstVariable,Variable secondVariable, Variable thirdVariable)
-		{
-			this();
-			arr[0] = firstVariable;
-			arr[1] = secondVariable;
-			arr[2] = thirdVariable;
-		}
-		
-		public void put(Variable firstVariable, Variable secondVariable, Variable thirdVariable)
-		{
-			arr[0] = firstVariable;
-			arr[1] = secondVariable;
-			arr[2] = thirdVariable;
-		}
-		
-		public Variable getFirstValue() { return arr[0]; }
-		public Variable getSecondValue() {return arr[1]; }
-		public Variable getThirdValue() {return arr[2]; }
-		
-		public boolean isNull()
-		{
-			return arr[0] == null || arr[1] == null || arr[2] == null;
-		}
-		
-		@Override
-		public String toString()
+		return nakedSubsets.propagate();
+	}
+	
+	/**
+	 * Hidden pairs or triples within each row, column and block, see {@link HiddenSubsetPropagator}.
+	 * @param maxSubsetSize largest subset size to look for
+	 * @return false if some values have too few places left, true otherwise
+	 */
+	private boolean hiddenSubsets(int maxSubsetSize)
+	{
+		if(hiddenSubsets == null)
 		{
-			return "(" + this.getFirstValue().getName() + ", " + this.getSecondValue().getName() + ", "+ this.getThirdValue().getName() + ")";
+			hiddenSubsets = new HiddenSubsetPropagator(network, maxSubsetSize);
 		}
-		
-		@Override
-		public boolean equals(Object o)
-		{
-			if(o == this)
-				return true;
-			if(!(o instanceof Pair))
-				return false;
-			
-			return false;
-		}
-		
+		return hiddenSubsets.propagate();
 	}
 	
-	
-	private boolean nakedTriples()
+	/**
+	 * Pointing pairs and box-line reduction, see {@link IntersectionPropagator}.
+	 * @return false if a domain is wiped out, true otherwise
+	 */
+	private boolean intersectionReduction()
 	{
-		List<Variable> tripleCandidates = new ArrayList<Variable>();
-		for(Variable v : this.network.getVariables())
+		if(intersections == null)
 		{
-			if(v.getDomain().size() == 3)
-				tripleCandidates.add(v);
+			intersections = new IntersectionPropagator(network);
 		}
-		
-		if(tripleCandidates.isEmpty())
-			return true;
-		
-		List<Variable> triple = new ArrayList<Variable>();
-		boolean areOnSameBox = false;
-		boolean areOnSameCol = false;
-		boolean areOnSameRow = false;
-		
-		
-		//this finds a list of values with a domain size 3 or 2.
-		outerloop:
-		for(Variable tripleCandidate : tripleCandidates)
+		return intersections.propagate();
+	}
+	
+	/**
+	 * Places every value that only one variable of a row, column or block still allows. 
+	 * Candidates come from the per-constraint value counts of {@link ValueSupport}, 
+	 * which are updated on every removal and undo, so no constraint is rescanned.
+	 * A placed value is also removed from the neighbors of its variable. 
+	 * Runs until no count is left at one.
+	 * @return false if some value has no place left in a constraint, true otherwise
+	 */
+	private boolean hiddenSingles()
+	{
+		ValueSupport support = network.getValueSupport();
+		for(int pair = support.pollLowSupport(); pair != -1; pair = support.pollLowSupport())
 		{
-			for(Variable neighbor : this.network.getNeighborsOfVariable(tripleCandidate))
+			if(network.isPastDeadline())
 			{
-				if(neighbor.getDomain().size() == 2)
-				{
-					if(tripleCandidate.getDomain().contains(neighbor.Values().get(0)) && tripleCandidate.getDomain().contains(neighbor.Values().get(1)))
-					{
-						triple.add(neighbor);
-						if(triple.size() == 2)
-						{
-							triple.add(tripleCandidate);
-							
-							Variable firstVariable = triple.get(0);
-							Variable secondVariable = triple.get(1);
-							Variable thirdVariable = triple.get(2);
-							
-							areOnSameBox = firstVariable.block() == secondVariable.block() && secondVariable.block() == thirdVariable.block();
-							areOnSameCol = firstVariable.col() == secondVariable.col() && secondVariable.col() == thirdVariable.col();
-							areOnSameRow = firstVariable.row() == secondVariable.row() && secondVariable.row() == thirdVariable.row();
-							
-							if(!areOnSameBox && !areOnSameCol && !areOnSameRow)
-								triple.clear();
-							else
-								break outerloop;
-						}
-					}
-				}
-				
-				if(neighbor.getDomain().size() == 3)
-				{
-					if(tripleCandidate.getDomain().contains(neighbor.Values().get(0)) && tripleCandidate.getDomain().contains(neighbor.Values().get(1)) && tripleCandidate.getDomain().contains(neighbor.Values().get(2)))
-					{
-						triple.add(neighbor);
-						if(triple.size() == 2)
-						{
-							triple.add(tripleCandidate);
-							
-							Variable firstVariable = triple.get(0);
-							Variable secondVariable = triple.get(1);
-							Variable thirdVariable = triple.get(2);
-							
-							areOnSameBox = firstVariable.block() == secondVariable.block() && secondVariable.block() == thirdVariable.block();
-							areOnSameCol = firstVariable.col() == secondVariable.col() && secondVariable.col() == thirdVariable.col();
-							areOnSameRow = firstVariable.row() == secondVariable.row() && secondVariable.row() == thirdVariable.row();
-							
-							if(!areOnSameBox && !areOnSameCol && !areOnSameRow)
-								triple.clear();
-							else
-								break outerloop;
-						}
-					}
-				}
+				support.clearLowSupport();
+				return false;
 			}
+			Constraint c = network.getConstraint(support.constraintOf(pair));
+			int value = support.valueOf(pair);
 			
-			//if no naked triples were found in the inner loop clear the triple list to avoid having invalid values in the list.
-			triple.clear();
-		}
-		
-		//used for 2/2/2 case.
-		Set<Integer> union = new HashSet<Integer>();
-		//handle 2/2/2 case
-		if(triple.size() < 3)
-		{
-			//remove previous values stored from previous search to avoid invalid naked triple from forming.
-			triple.clear();
+			// only when there are as many variables as values must every value be placed
+			if(c.size() < support.getMaxValue())
+			{
+				continue;
+			}
 			
-			//find all variables in the network with domain size = 2.
-			List<Variable> doubleCandidates = new ArrayList<Variable>();
-			for(Variable candidate : this.network.getVariables())
+			int count = support.getCount(c.getId(), value);
+			if(count == 0)
 			{
-				if(candidate.getDomain().size() == 2)
-				{
-					doubleCandidates.add(candidate);
-				}
+				network.increaseWeight(c.getId());
+				support.clearLowSupport();
+				return false;
+			}
+			if(count > 1)
+			{
+				continue;
 			}
 			
-			//search for a naked triple with 2/2/2 where the union of all 3 variables domain size sum to 3.
-			outerloop:
-			for(Variable doubleCandidate : doubleCandidates)
+			for(Variable v : c.vars)
 			{
-				for(Variable other : doubleCandidates)
+				if(v.getDomain().contains(value))
 				{
-					if(doubleCandidate == other)
-						continue;
-					
-					if(this.areNeighbors(doubleCandidate, other))
+					if(!v.isAssigned() && !placeHiddenSingle(v, value))
 					{
-						Integer firstValue = doubleCandidate.Values().get(0);
-						Integer secondValue = doubleCandidate.Values().get(1);
-
-						if(other.getDomain().contains(firstValue) || other.getDomain().contains(secondValue))
-						{			
-							triple.add(other);
-							if(triple.size() == 2)
-							{
-								triple.add(doubleCandidate);
-								
-								Variable firstVariable = triple.get(0);
-								Variable secondVariable = triple.get(1);
-								Variable thirdVariable = triple.get(2);
-								
-								areOnSameBox = firstVariable.block() == secondVariable.block() && secondVariable.block() == thirdVariable.block();
-								areOnSameRow =  firstVariable.row() == secondVariable.row() && secondVariable.row() == thirdVariable.row();
-								areOnSameCol =  firstVariable.col() == secondVariable.col() && secondVariable.col() == thirdVariable.col();
-								
-								//if potential naked triple is not found on the same unit, goto the next double candidate.
-								if(!areOnSameBox && ! areOnSameRow && ! areOnSameCol)
-									break;
-																
-								//is a valid naked triple if the 3 variable's values joined in a union has a size of 3.
-								for(Variable t : triple)
-									union.addAll(t.Values());
-								
-								if(union.size() == 3)
-								{
-									break outerloop;//valid naked triple is found
-								}
-								else
-								{
-									union.clear();
-									break; //inner loop ~ continue the search
-								}
-																
-							}
-						}						
-						else if(triple.size() == 1)//if there is one other value in the triple
-						{
-							Integer t_firstValue = triple.get(0).Values().get(0);
-							Integer t_secondValue = triple.get(0).Values().get(1);
-							
-							if(other.getDomain().contains(t_firstValue) || other.getDomain().contains(t_secondValue))
-							{
-								triple.add(other);
-								
-								//the size of the list becomes 2 so we don't have to check for that here.
-								triple.add(doubleCandidate);
-								
-								Variable firstVariable = triple.get(0);
-								Variable secondVariable = triple.get(1);
-								Variable thirdVariable = triple.get(2);
-								
-								areOnSameBox = firstVariable.block() == secondVariable.block() && secondVariable.block() == thirdVariable.block();
-								areOnSameRow =  firstVariable.row() == secondVariable.row() && secondVariable.row() == thirdVariable.row();
-								areOnSameCol =  firstVariable.col() == secondVariable.col() && secondVariable.col() == thirdVariable.col();
-								
-								//if potential naked triple is not found on the same unit, goto the next double candidate.
-								if(!areOnSameBox && ! areOnSameRow && ! areOnSameCol)
-									break;
-																
-								//is a valid naked triple if the 3 variable's values joined in a union has a size of 3.
-								for(Variable t : triple)
-									union.addAll(t.Values());
-								
-								if(union.size() == 3)
-									break outerloop;//valid naked triple is found
-								else
-								{
-									union.clear();
-									break; //inner loop ~ continue the search
-								}
-								
-							}
-										
-						}
+						support.clearLowSupport();
+						return false;
 					}
-						
+					break;
 				}
-				
-				triple.clear();
 			}
 		}
-		
-		//if no naked triples can be found for 3/3/3, 3/3/2, 3/2/2, or 2/2/2 case , pass the consistency.
-		if(triple.size() < 3)
-			return true;
-		
-		//by default these values are -1 if 3 variables do not share a property checked below
-		int sharedBlock = -1;
-		int sharedRow = -1;
-		int sharedCol = -1;
-		
-		if(areOnSameBox)
-		{
-			sharedBlock = triple.get(0).block();
-		}
-		
-		if(areOnSameRow)
-		{
-			sharedRow = triple.get(0).row();
-		}
-		
-		if(areOnSameCol)
-		{
-			sharedCol = triple.get(0).col();
-		}
-		
-		//the last index of the list holds the triple!
-		Integer[] tripletToMatch = new Integer[3];
-		if(triple.get(2).size() == 2)
+		return true;
+	}
+	
+	/**
+	 * Reduces the domain of v to <tt>value</tt> and removes <tt>value</tt> from its neighbors.
+	 * @return false if a neighbor's domain is wiped out, true otherwise
+	 */
+	private boolean placeHiddenSingle(Variable v, int value)
+	{
+		Domain d = v.getDomain();
+		for(int other = d.firstValue(); other != 0; other = d.nextValue(other))
 		{
-			int i = 0;
-			for(Integer value : union)
+			if(other != value)
 			{
-				tripletToMatch[i++] = value;
+				v.removeValueFromDomain(other);
 			}
 		}
-		else
+		for(int neighborId : network.getNeighborIds(v))
 		{
-			tripletToMatch[0] = triple.get(2).Values().get(0);
-			tripletToMatch[1] = triple.get(2).Values().get(1);
-			tripletToMatch[2] = triple.get(2).Values().get(2);
-		}
-		
-		
-		//a unit is a box, row, or col that the variable pair share in common... where we search for when removing values from the domain.
-		Set<Variable> unit = new HashSet<Variable>();
-		
-		for(Variable candidate : this.network.getNeighborsOfVariable(triple.get(0)))
-		{
-			if(candidate.isAssigned() || candidate == triple.get(0) || candidate == triple.get(1) || candidate == triple.get(2))
-				continue;
-			
-			if(areOnSameBox && sharedBlock == candidate.block())
-				unit.add(candidate);
-			else if(areOnSameRow && sharedRow == candidate.row())
-				unit.add(candidate);
-			else if(areOnSameCol && sharedCol == candidate.col())
-				unit.add(candidate);
-		}
-		
-		//remove values from unit if candidate's domain contains any value in triple
-		for(Variable candidate : unit)
-		{
-			if(candidate.getDomain().contains(tripletToMatch[0]))
-				candidate.removeValueFromDomain(tripletToMatch[0]);
-			
-			if(candidate.getDomain().contains(tripletToMatch[1]))
-				candidate.removeValueFromDomain(tripletToMatch[1]);
-			
-			if(candidate.getDomain().contains(tripletToMatch[2]))
-				candidate.removeValueFromDomain(tripletToMatch[2]);
-			
-			if(candidate.getDomain().isEmpty())
-				return false;
+			Variable neighbor = network.getVariable(neighborId);
+			if(neighbor.getDomain().contains(value))
+			{
+				neighbor.removeValueFromDomain(value);
+				if(neighbor.getDomain().isEmpty())
+				{
+					recordWipeout(v, neighbor);
+					return false;
+				}
+			}
 		}
-		
-		
-		
-		
-		return true;		
+		return true;
 	}
 	
-	
-	//@returns true iff v1 and v2 are on the same row, column, or block.
-	private boolean areNeighbors(Variable v1, Variable v2)
+	/**
+	 * Raises the conflict weight of every constraint shared by two variables, after
+	 * removing <tt>cause</tt>'s value from <tt>wiped</tt> emptied its domain, or
+	 * the two were found assigned the same value. Every consistency check calls
+	 * this on failure, so dom/wdeg learns whichever one is in use.
+	 */
+	private void recordWipeout(Variable cause, Variable wiped)
 	{
-		return v1.row() == v2.row() || v1.col() == v2.col() || v1.block() == v2.block();
+		for(int cId : network.getConstraintIds(cause))
+		{
+			for(int other : network.getConstraintIds(wiped))
+			{
+				if(cId == other)
+				{
+					network.increaseWeight(cId);
+				}
+			}
+		}
 	}
 	
-	
 	/**
 	 * Selects the next variable to check.
 	 * @return next variable to check. null if there are no more variables to check. 
@@ -846,6 +904,14 @@ public class BTSolver implements Runnable{
 		break;
 		case Degree:				next = getDegree();
 		break;
+		case IndexedMinimumRemainingValue: next = getIndexedMRV();
+		break;
+		case IndexedDegree:			next = getIndexedDegree();
+		break;
+		case MinimumRemainingValueThenDegree: next = getMRVThenDegree();
+		break;
+		case DomainOverWeightedDegree: next = getDomOverWDeg();
+		break;
 		default:					next = getfirstUnassignedVariable();
 		break;
 		}
@@ -886,6 +952,81 @@ public class BTSolver implements Runnable{
 		return minimum;
 	}
 	
+	/**
+	 * Same choice as {@link #getMRV()}, read from buckets of variables by domain size 
+	 * that are kept up to date as domains change, see {@link DomainSizeIndex}.
+	 * @return variable with minimum remaining values that isn't assigned, null if all variables are assigned. 
+	 */
+	private Variable getIndexedMRV()
+	{
+		if(domainSizes == null)
+		{
+			domainSizes = new DomainSizeIndex(network);
+		}
+		return domainSizes.getMinimum();
+	}
+	
+	/**
+	 * Same choice as {@link #getDegree()}, from unassigned neighbor counts that are
+	 * kept up to date as variables are assigned and unassigned, see {@link DegreeIndex}.
+	 * @return variable constrained by the most unassigned variables, null if all variables are assigned.
+	 */
+	private Variable getIndexedDegree()
+	{
+		if(degrees == null)
+		{
+			degrees = new DegreeIndex(network);
+		}
+		return degrees.getMaximum();
+	}
+	
+	/**
+	 * MRV, with ties broken by the most unassigned neighbors and then the lowest id.
+	 * @return unassigned variable with minimum remaining values, null if all variables are assigned.
+	 */
+	private Variable getMRVThenDegree()
+	{
+		if(domainSizes == null)
+		{
+			domainSizes = new DomainSizeIndex(network);
+		}
+		if(degrees == null)
+		{
+			degrees = new DegreeIndex(network);
+		}
+		return domainSizes.getMinimum(degrees);
+	}
+	
+	/**
+	 * dom/wdeg: the unassigned variable with the smallest ratio of domain size to the 
+	 * summed conflict weights of its constraints, see {@link ConstraintNetwork#increaseWeight(int)}. 
+	 * Until a constraint has failed every weight is 1, so this starts out as plain MRV.
+	 * @return unassigned variable with the smallest domain size over weighted degree, lowest id first on ties, null if all variables are assigned.
+	 */
+	private Variable getDomOverWDeg()
+	{
+		Variable best = null;
+		int bestSize = 0;
+		int bestWeight = 0;
+		for(Variable v : network.getVariables())
+		{
+			if(v.isAssigned())
+			{
+				continue;
+			}
+			int size = v.size();
+			int weight = network.getWeightedDegree(v);
+			// size / weight < bestSize / bestWeight without dividing
+			if(best == null || (long) size * bestWeight < (long) bestSize * weight)
+			{
+				best = v;
+				bestSize = size;
+				bestWeight = weight;
+			}
+		}
+		return best;
+	}
+	
 	/**
 	 * TODO: Implement Degree heuristic
 	 * @return variable constrained by the most unassigned variables, null if all variables are assigned.
@@ -971,55 +1112,167 @@ public class BTSolver implements Runnable{
 	 */
 	public List<Integer> getValuesLCVOrder(Variable v)
 	{
-		
-		List<Variable> neighbors = this.network.getNeighborsOfVariable(v);
-		List<Integer> values = v.getDomain().getValues();
-		
-		//the sum of all conflicts that occurred per value available in the selected variable's domain.
-		List<Integer> conflictSums = new ArrayList<Integer>();
-		
-		for(int i = 0;i < values.size(); ++i)
-		{	
-			Integer numConflicts = 0;
-			for(Variable neighbor : neighbors)
+		int[] values = new int[v.size()];
+		int numValues = orderValuesLCV(v, values);
+		List<Integer> sortedValues = new ArrayList<Integer>(numValues);
+		for(int i = 0; i < numValues; ++i)
+		{
+			sortedValues.add(values[i]);
+		}
+		return sortedValues;
+	}
+	
+	/**
+	 * Writes the values of v into <tt>values</tt> in the order set by the value 
+	 * selection heuristic, without allocating.
+	 * @param values buffer of at least v.size() entries
+	 * @return number of values written
+	 */
+	private int fillNextValues(Variable v, int[] values)
+	{
+		switch(valHeuristics)
+		{
+		case LeastConstrainingValue:	return orderValuesLCV(v, values);
+		default:						return fillValuesInOrder(v, values);
+		}
+	}
+	
+	private int fillValuesInOrder(Variable v, int[] values)
+	{
+		Domain d = v.getDomain();
+		int numValues = 0;
+		for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+		{
+			values[numValues++] = value;
+		}
+		return numValues;
+	}
+	
+	/**
+	 * LCV into a primitive buffer: values ordered by how many neighbors still allow 
+	 * them, fewest first, ties in ascending value order. Counts walk the shared 
+	 * neighbor id arrays, and an insertion sort keeps equal counts in domain order, 
+	 * so nothing is allocated once the scratch array is big enough.
+	 * @param values buffer of at least v.size() entries
+	 * @return number of values written
+	 */
+	private int orderValuesLCV(Variable v, int[] values)
+	{
+		int numValues = fillValuesInOrder(v, values);
+		if(valueConflicts == null || valueConflicts.length < numValues)
+		{
+			valueConflicts = new int[numValues];
+		}
+		int[] conflicts = valueConflicts;
+		for(int i = 0; i < numValues; ++i)
+		{
+			conflicts[i] = 0;
+		}
+		for(int neighborId : network.getNeighborIds(v))
+		{
+			Domain d = network.getVariable(neighborId).getDomain();
+			for(int i = 0; i < numValues; ++i)
 			{
-				if(neighbor.getDomain().contains(v.Values().get(i)))
+				if(d.contains(values[i]))
 				{
-					++numConflicts;
+					++conflicts[i];
 				}
-				
 			}
-			
-			conflictSums.add(i, numConflicts);
 		}
 		
-		//key: value from selected variable's domain. (number that can be put on a sudoku slot).
-		//value: number of conflicts associated with selected value from variable.
-		Map<Integer,Integer> valueDomainPairsMap = new HashMap<Integer,Integer>();
-		for(int i = 0;i < values.size();++i)
+		for(int i = 1; i < numValues; ++i)
 		{
-			valueDomainPairsMap.put(values.get(i), conflictSums.get(i));
+			int value = values[i];
+			int count = conflicts[i];
+			int j = i - 1;
+			while(j >= 0 && conflicts[j] > count)
+			{
+				values[j + 1] = values[j];
+				conflicts[j + 1] = conflicts[j];
+				--j;
+			}
+			values[j + 1] = value;
+			conflicts[j + 1] = count;
 		}
-		
-		
-		//put back sorted values by total neighboring domain sizes in ascending order.
-		List<Integer> sortedValuesByDomainSize = new ArrayList<Integer>();
-		valueDomainPairsMap = MapUtil.sortByValue(valueDomainPairsMap);
-		for(Map.Entry<Integer,Integer> entry : valueDomainPairsMap.entrySet())
-		{	
-			//System.out.println("Value: " + entry.getKey() + ", Domain Size: " + entry.getValue());
-			sortedValuesByDomainSize.add(entry.getKey());
+		return numValues;
+	}
+	
+	/**
+	 * @return the buffer for the values tried at the given search depth, grown to hold <tt>size</tt> values
+	 */
+	private int[] getValueBuffer(int level, int size)
+	{
+		if(valueBuffers[level] == null || valueBuffers[level].length < size)
+		{
+			valueBuffers[level] = new int[size];
+		}
+		return valueBuffers[level];
+	}
+	
+	/**
+	 * The incremental checks only look at what changed since their last call. 
+	 * The givens are propagated once here, before the first breadcrumb, so that 
+	 * undoing a failed first assignment cannot also undo their propagation.
+	 * @return false if the puzzle is inconsistent before any assignment
+	 */
+	private boolean propagateInitialState()
+	{
+		boolean isConsistent;
+		switch(cChecks)
+		{
+		case IncrementalArcConsistency:	isConsistent = incrementalArcConsistency();
+		break;
+		case IncrementalForwardChecking:
+			for(Variable v : network.getVariables())
+			{
+				if(v.isAssigned())
+				{
+					getPropagationQueue().offer(v.getId());
+				}
+			}
+			isConsistent = propagateAssignments();
+		break;
+		case GeneralizedArcConsistency:	isConsistent = generalizedArcConsistency();
+		break;
+		case Fish:						isConsistent = fishChecking();
+		break;
+		default:						isConsistent = true;
+		break;
 		}
 		
-		return sortedValuesByDomainSize;
+		// fishChecking already ran the naked check
+		if(cChecks == ConsistencyCheck.Fish)
+		{
+			return isConsistent;
+		}
+		switch(nCheck)
+		{
+		case HiddenSingles:	return isConsistent && hiddenSingles();
+		case NakedPairs:	return isConsistent && nakedSubsets(2);
+		case NakedTriples:	return isConsistent && nakedSubsets(3);
+		case NakedQuads:	return isConsistent && nakedSubsets(4);
+		case HiddenPairs:	return isConsistent && hiddenSubsets(2);
+		case HiddenTriples:	return isConsistent && hiddenSubsets(3);
+		case IntersectionReduction:	return isConsistent && intersectionReduction();
+		default:			return isConsistent;
+		}
 	}
+	
 	/**
-	 * Called when solver finds a solution
+	 * Called when solver finds a solution. Only the first one is converted to a board.
 	 */
 	private void success()
 	{
-		hasSolution = true;
-		sudokuGrid = Converter.ConstraintNetworkToSudokuFile(network, sudokuGrid.getN(), sudokuGrid.getP(), sudokuGrid.getQ());
+		numSolutions++;
+		if(!hasSolution)
+		{
+			hasSolution = true;
+			sudokuGrid = Converter.ConstraintNetworkToSudokuFile(network, sudokuGrid.getN(), sudokuGrid.getP(), sudokuGrid.getQ());
+		}
+		if(parallel != null ? parallel.countSolution() : numSolutions >= solutionLimit)
+		{
+			limitReached = true;
+		}
 	}
 
 	//===============================================================================
@@ -1031,15 +1284,65 @@ public class BTSolver implements Runnable{
 	 */
 	public void solve()
 	{
+		trail.clear();
+		trail.setMode(trailMode);
+		trail.resetPeakBytes();
+		valueBuffers = new int[network.getVariables().size() + 1][];
+		startTime = System.currentTimeMillis();
+		try {
+			if(propagateInitialState())
+			{
+				solve(0);
+			}
+		}catch (VariableSelectionException e)
+		{
+			System.out.println("error with variable selection heuristic.");
+		}
+		endTime = System.currentTimeMillis();
+		peakTrailBytes = trail.getPeakBytes();
+		trail.clear();
+	}
+
+	/**
+	 * Searches the subtree below assigning <tt>value</tt> to a variable, starting 
+	 * from the domains copied in {@link #BTSolver(BTSolver)}. Used by {@link ParallelBTSolver}.
+	 * @param variableId id of the variable to assign
+	 * @param level depth of the subtree's root in the whole search tree
+	 */
+	void solveSubtree(int variableId, int value, int level)
+	{
+		trail.clear();
+		trail.setMode(trailMode);
+		trail.resetPeakBytes();
+		valueBuffers = new int[network.getVariables().size() + 1][];
 		startTime = System.currentTimeMillis();
 		try {
-			solve(0);
+			Variable v = network.getVariable(variableId);
+			v.setDomain(v.getDomain().singleton(value));
+			numAssignments++;
+			if(checkConsistency(v) && (cChecks == ConsistencyCheck.Fish || checkNakedConsistency()))
+			{
+				solve(level);
+			}
+			if(!limitReached && !isCancelled())
+			{
+				numBacktracks++;
+			}
 		}catch (VariableSelectionException e)
 		{
 			System.out.println("error with variable selection heuristic.");
 		}
 		endTime = System.currentTimeMillis();
-		Trail.clearTrail();
+		peakTrailBytes = trail.getPeakBytes();
+		trail.clear();
+	}
+
+	/**
+	 * @return true if the thread was interrupted, the deadline has passed, or a parallel search reached its solution limit
+	 */
+	private boolean isCancelled()
+	{
+		return Thread.currentThread().isInterrupted() || network.isPastDeadline() || (parallel != null && parallel.isDone());
 	}
 
 	/**
@@ -1050,10 +1353,10 @@ public class BTSolver implements Runnable{
 
 	private void solve(int level) throws VariableSelectionException
 	{
-		if(!Thread.currentThread().isInterrupted())
+		if(!isCancelled())
 
 		{//Check if assignment is completed
-			if(hasSolution)
+			if(limitReached)
 			{
 				return;
 			}
@@ -1078,15 +1381,23 @@ public class BTSolver implements Runnable{
 			//loop through the values of the variable being checked LCV
 
 			
-			for(Integer i : getNextValues(v))
+			int[] values = getValueBuffer(level, v.size());
+			int numValues = fillNextValues(v, values);
+			if(parallel != null && numValues > 1 && parallel.shouldSplit(level))
+			{
+				parallel.split(this, v, values, numValues, level);
+				return;
+			}
+			for(int i = 0; i < numValues && !isCancelled(); i++)
 			{
 				trail.placeBreadCrumb();
 				
 				//check a value
-				v.updateDomain(new Domain(i));
+				v.updateDomain(v.getDomain().singleton(values[i]));
 				numAssignments++;
-				boolean isConsistent = checkConsistency();
-				boolean isNakedConsistent = checkNakedConsistency();
+				boolean isConsistent = checkConsistency(v);
+				// under Fish the naked check runs inside fishChecking
+				boolean isNakedConsistent = cChecks == ConsistencyCheck.Fish || checkNakedConsistency();
 				
 				//move to the next assignment
 				if(isConsistent && isNakedConsistent)
@@ -1095,7 +1406,7 @@ public class BTSolver implements Runnable{
 				}
 
 				//if this assignment failed at any stage, backtrack
-				if(!hasSolution)
+				if(!limitReached)
 				{
 					trail.undo();
 					numBacktracks++;
@@ -0,0 +1,207 @@
+package cspSolver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Domain backed by a single long. Value v is held in bit v-1, so values
+ * 1..64 are supported. contains, remove and size are O(1).
+ */
+public class BitDomain extends Domain{
+
+	/**
+	 * Largest value a BitDomain can hold.
+	 */
+	public static final int MAX_VALUE = Long.SIZE;
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private long mask;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * Constructs a domain with a single value
+	 * @param value the sole value within the domain
+	 */
+	public BitDomain(int value)
+	{
+		mask = bit(value);
+	}
+
+	/**
+	 * Constructs a domain with a List<Integer> of values
+	 * @param values all possible values for the domain
+	 */
+	public BitDomain(List<Integer> values)
+	{
+		for(Integer value : values)
+		{
+			mask |= bit(value);
+		}
+	}
+
+	/**
+	 * Copy Constructor. Used to keep a copy of assignments in the Trail.
+	 * @param d the domain to copy
+	 * @see Trail
+	 */
+	public BitDomain(BitDomain d)
+	{
+		this.mask = d.mask;
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return the values in the domain as a bitmask, value v in bit v-1.
+	 */
+	public long getMask()
+	{
+		return mask;
+	}
+
+	/**
+	 * Builds a new list on every call; prefer {@link #firstValue()} and
+	 * {@link #nextValue(int)} on hot paths.
+	 */
+	@Override
+	public ArrayList<Integer> getValues()
+	{
+		ArrayList<Integer> values = new ArrayList<Integer>(size());
+		for(long m = mask; m != 0; m &= m - 1)
+		{
+			values.add(Long.numberOfTrailingZeros(m) + 1);
+		}
+		return values;
+	}
+
+	@Override
+	public boolean contains(int value)
+	{
+		return value >= 1 && value <= MAX_VALUE && (mask & (1L << (value - 1))) != 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return Long.bitCount(mask);
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return mask == 0;
+	}
+
+	@Override
+	public int firstValue()
+	{
+		return mask == 0 ? 0 : Long.numberOfTrailingZeros(mask) + 1;
+	}
+
+	@Override
+	public int nextValue(int value)
+	{
+		if(value >= MAX_VALUE)
+		{
+			return 0;
+		}
+		long rest = value < 1 ? mask : mask & (-1L << value);
+		return rest == 0 ? 0 : Long.numberOfTrailingZeros(rest) + 1;
+	}
+
+	@Override
+	public Domain copy()
+	{
+		return new BitDomain(this);
+	}
+
+	@Override
+	public Domain singleton(int value)
+	{
+		return new BitDomain(value);
+	}
+
+	@Override
+	public int sizeInBytes()
+	{
+		return 24;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	@Override
+	public boolean remove(int value)
+	{
+		if(!contains(value))
+		{
+			return false;
+		}
+
+		setModified(true);
+		mask &= ~(1L << (value - 1));
+		return true;
+	}
+
+	@Override
+	public void add(int value)
+	{
+		mask |= bit(value);
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	private static long bit(int value)
+	{
+		if(value < 1 || value > MAX_VALUE)
+		{
+			throw new IllegalArgumentException("BitDomain holds values 1.." + MAX_VALUE + ", got " + value);
+		}
+		return 1L << (value - 1);
+	}
+
+	//===============================================================================
+	// Iterator
+	//===============================================================================
+
+	/**
+	 * Iterates the values in ascending order, lowest bit first. The iterator
+	 * works on a snapshot of the mask, so removing values while iterating is safe.
+	 */
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+
+			private long remaining = mask;
+
+			@Override
+			public boolean hasNext() {
+				return remaining != 0;
+			}
+
+			@Override
+			public Integer next() {
+				if(remaining == 0)
+				{
+					throw new NoSuchElementException();
+				}
+				int value = Long.numberOfTrailingZeros(remaining) + 1;
+				remaining &= remaining - 1;
+				return value;
+			}
+		};
+	}
+}
@@ -14,6 +14,7 @@ public class Constraint{
 	//===============================================================================
 
 	public List<Variable> vars;
+	private int id = -1;
 
 	//===============================================================================
 	// Constructors
@@ -37,6 +38,15 @@ public class Constraint{
 	{
 		vars.add(v);
 	}
+	
+	/**
+	 * Set by the ConstraintNetwork the constraint is added to. 
+	 * @param id position of this constraint in the network
+	 */
+	void setId(int id)
+	{
+		this.id = id;
+	}
 		
 	//===============================================================================
 	// Accessors
@@ -47,6 +57,14 @@ public class Constraint{
 		return vars.size();
 	}
 	
+	/**
+	 * @return position of this constraint in its ConstraintNetwork, -1 if it has not been added to one.
+	 */
+	public int getId()
+	{
+		return id;
+	}
+	
 	/**
 	 * 
 	 * @param v a Variable
@@ -1,9 +1,9 @@
 package cspSolver;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 /**
  * CSP representation of the problem. Contains the variables, constraints, and 
@@ -12,12 +12,49 @@ import java.util.Set;
  */
 public class ConstraintNetwork {
 	
+	/**
+	 * Deadline of a network that may be solved for as long as it takes.
+	 */
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+	
 	//===============================================================================
 	// Properties
 	//===============================================================================
 	
 	private List<Constraint> constraints;
 	private List<Variable> variables;
+	private Trail trail;
+	
+	// Indexes built on first use and dropped whenever the network changes.
+	// neighborIds[id] holds the ids of every variable sharing a constraint with 
+	// variable id, in ascending order. constraintIds[id] holds the ids of the 
+	// constraints containing variable id.
+	private int[][] neighborIds;
+	private List<List<Variable>> neighbors;
+	private int[][] constraintIds;
+	private List<List<Constraint>> constraintsOfVariable;
+	
+	// conflict weight of each constraint, see increaseWeight
+	private int[] weights;
+	
+	// largest value of any domain and largest number of variables of any constraint
+	private int maxValue;
+	private int maxArity;
+	
+	// values removed from any domain through Variable#removeValueFromDomain, never reset
+	private long numRemovals;
+	
+	// Events: ids of the variables modified since they were last polled, rebuilt with 
+	// the indexes from the modified flags, and one queue of constraint ids per subscriber
+	private RingQueue modifiedVariables;
+	private List<RingQueue> constraintSubscribers = new ArrayList<RingQueue>();
+	
+	// built on first use and dropped whenever the network changes
+	private ValueSupport valueSupport;
+	private List<DomainListener> domainListeners = new ArrayList<DomainListener>();
+	
+	// System.currentTimeMillis() by which solving must stop, set from other threads
+	private volatile long deadline = NO_DEADLINE;
 	
 	//===============================================================================
 	// Constructor 
@@ -27,25 +64,78 @@ public class ConstraintNetwork {
 	{
 		variables = new ArrayList<Variable>();
 		constraints = new ArrayList<Constraint>();
+		trail = new Trail(this);
+	}
+	
+	/**
+	 * Copies another network with the current domains of its variables, e.g. to search 
+	 * a subtree on another thread. The id indexes are immutable and shared with the 
+	 * original instead of being rebuilt, so copying takes time linear in the size of 
+	 * the network. Conflict weights and the deadline are copied as well; listeners, 
+	 * subscriptions and the trail are not. Every variable of the copy starts out modified.
+	 * @param original network to copy, whose indexes must be built, see {@link #buildIndex()}, 
+	 * and which must not change while it is being copied
+	 */
+	ConstraintNetwork(ConstraintNetwork original)
+	{
+		trail = new Trail(this);
+		variables = new ArrayList<Variable>(original.variables.size());
+		for(Variable v : original.variables)
+		{
+			variables.add(new Variable(v, this));
+		}
+		constraints = new ArrayList<Constraint>(original.constraints.size());
+		for(Constraint c : original.constraints)
+		{
+			List<Variable> vars = new ArrayList<Variable>(c.size());
+			for(Variable v : c.vars)
+			{
+				vars.add(variables.get(v.getId()));
+			}
+			Constraint copy = new Constraint(vars);
+			copy.setId(c.getId());
+			constraints.add(copy);
+		}
+		neighborIds = original.neighborIds;
+		constraintIds = original.constraintIds;
+		weights = original.weights.clone();
+		maxValue = original.maxValue;
+		maxArity = original.maxArity;
+		deadline = original.deadline;
+		buildViews();
 	}
 	
 	//===============================================================================
 	// Modifiers
 	//===============================================================================
 	
+	/**
+	 * Adds a constraint and gives it the next id, i.e. its position in {@link #getConstraints()}.
+	 * @param c constraint to add
+	 */
 	public void add(Constraint c)
 	{
 		if (!constraints.contains(c))
 		{
+			c.setId(constraints.size());
 			constraints.add(c);
+			clearIndex();
 		}
 	}
 	
+	/**
+	 * Adds a variable, gives it the next id, i.e. its position in {@link #getVariables()},
+	 * and has it record its changes on this network's trail.
+	 * @param v variable to add
+	 */
 	public void add(Variable v)
 	{
 		if(!variables.contains(v))
 		{
+			v.setId(variables.size());
+			v.setNetwork(this);
 			variables.add(v);
+			clearIndex();
 		}
 	}
 	
@@ -71,19 +161,43 @@ public class ConstraintNetwork {
 		return variables;
 	}
 	
+	/**
+	 * @return the trail recording changes to the domains of this network's variables
+	 */
+	public Trail getTrail()
+	{
+		return trail;
+	}
+	
+	/**
+	 * @param id id of a variable in this network
+	 * @return the variable with that id
+	 */
+	public Variable getVariable(int id)
+	{
+		return variables.get(id);
+	}
+	
+	/**
+	 * @param v variable to check
+	 * @return unmodifiable list of every other variable sharing a constraint with v, in id order
+	 */
 	public List<Variable> getNeighborsOfVariable(Variable v)
 	{
-		Set<Variable> neighbors = new HashSet<Variable>();
-		
-		for(Constraint c : constraints)
-		{
-			if(c.contains(v))
-			{
-				neighbors.addAll(c.vars);
-			}
-		}
-		neighbors.remove(v);
-		return new ArrayList<Variable>(neighbors);
+		buildIndex();
+		return neighbors.get(v.getId());
+	}
+	
+	/**
+	 * Same as {@link #getNeighborsOfVariable(Variable)}, as ids. 
+	 * The array is shared and must not be modified.
+	 * @param v variable to check
+	 * @return ids of every other variable sharing a constraint with v, in ascending order
+	 */
+	public int[] getNeighborIds(Variable v)
+	{
+		buildIndex();
+		return neighborIds[v.getId()];
 	}
 	
 	/**
@@ -104,52 +218,388 @@ public class ConstraintNetwork {
 	
 	/**
 	 * @param v variable to check
-	 * @return list of constraints that contains v
+	 * @return unmodifiable list of constraints that contains v
 	 */
 	public List<Constraint> getConstraintsContainingVariable(Variable v)
 	{
-		List<Constraint> outList = new ArrayList<Constraint>();
-		for(Constraint c : constraints)
+		buildIndex();
+		return constraintsOfVariable.get(v.getId());
+	}
+	
+	/**
+	 * Same as {@link #getConstraintsContainingVariable(Variable)}, as ids. 
+	 * The array is shared and must not be modified.
+	 * @param v variable to check
+	 * @return ids of the constraints that contain v
+	 */
+	public int[] getConstraintIds(Variable v)
+	{
+		buildIndex();
+		return constraintIds[v.getId()];
+	}
+	
+	/**
+	 * @param id id of a constraint in this network
+	 * @return the constraint with that id
+	 */
+	public Constraint getConstraint(int id)
+	{
+		return constraints.get(id);
+	}
+	
+	/**
+	 * Used to size arrays indexed by value. Search only removes values, so this is 
+	 * the board size as long as the indexes are first built before the search starts.
+	 * @return the largest value any domain held when the indexes were built
+	 */
+	public int getMaxValue()
+	{
+		buildIndex();
+		return maxValue;
+	}
+	
+	/**
+	 * @return the number of variables of the largest constraint
+	 */
+	public int getMaxArity()
+	{
+		buildIndex();
+		return maxArity;
+	}
+	
+	/**
+	 * Compare before and after a propagation pass to see whether it removed anything.
+	 * Restoring values on undo does not lower the count.
+	 * @return the number of values removed from the domains of this network so far
+	 */
+	public long getNumRemovals()
+	{
+		return numRemovals;
+	}
+	
+	/**
+	 * @return time by which solvers and propagators working on this network must stop, 
+	 * as a System.currentTimeMillis() value, {@link #NO_DEADLINE} if there is none
+	 */
+	public long getDeadline()
+	{
+		return deadline;
+	}
+	
+	/**
+	 * Checkpoint for long loops in solvers and propagators. Cheap enough to call once 
+	 * per queue item: it only reads the clock when a deadline is set.
+	 * @return true if the deadline has passed
+	 */
+	public boolean isPastDeadline()
+	{
+		long d = deadline;
+		return d != NO_DEADLINE && System.currentTimeMillis() >= d;
+	}
+	
+	/**
+	 * @param cId id of a constraint in this network
+	 * @return the conflict weight of the constraint, 1 plus the number of wipeouts it caused
+	 */
+	public int getWeight(int cId)
+	{
+		buildIndex();
+		return weights[cId];
+	}
+	
+	/**
+	 * May be called from any thread, e.g. to cancel a running solve by passing the current time.
+	 * @param deadline System.currentTimeMillis() value by which solving must stop, {@link #NO_DEADLINE} for none
+	 */
+	public void setDeadline(long deadline)
+	{
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Called by propagators when propagating a constraint wipes out a domain. 
+	 * Weights are not undone by the Trail, so they build up over a whole solve.
+	 * @param cId id of the constraint that caused the wipeout
+	 */
+	public void increaseWeight(int cId)
+	{
+		buildIndex();
+		weights[cId]++;
+	}
+	
+	/**
+	 * @param v variable to check
+	 * @return sum of the conflict weights of the constraints containing v
+	 */
+	public int getWeightedDegree(Variable v)
+	{
+		buildIndex();
+		int sum = 0;
+		for(int cId : constraintIds[v.getId()])
 		{
-			if(c.contains(v))
+			sum += weights[cId];
+		}
+		return sum;
+	}
+	
+	/**
+	 * Takes the next variable off the event queue. A variable is queued at most 
+	 * once however often it changes, and may be queued again once polled. 
+	 * Polling does not clear its modified flag, and clearing the flag does not 
+	 * dequeue it, so check {@link Variable#isModified()} if that matters.
+	 * @return id of a variable modified since it was last polled, -1 if there is none
+	 */
+	public int pollModifiedVariable()
+	{
+		buildIndex();
+		return modifiedVariables.poll();
+	}
+	
+	/**
+	 * Gives a propagator its own queue of modified constraints, drained independently 
+	 * of the other subscribers. Every constraint starts out queued. 
+	 * The queue stops receiving events once the network changes.
+	 * @return a queue of ids of constraints containing a variable modified since the constraint was last polled
+	 */
+	public RingQueue subscribeToModifiedConstraints()
+	{
+		buildIndex();
+		RingQueue queue = new RingQueue(constraints.size());
+		for(int cId = 0; cId < constraints.size(); cId++)
+		{
+			queue.offer(cId);
+		}
+		constraintSubscribers.add(queue);
+		return queue;
+	}
+	
+	/**
+	 * Starts counting, per constraint and value, the variables that allow the value.
+	 * From then on every change to a domain updates the counts.
+	 * @return the counts for this network
+	 */
+	public ValueSupport getValueSupport()
+	{
+		if(valueSupport == null)
+		{
+			buildIndex();
+			valueSupport = new ValueSupport(this);
+			addDomainListener(valueSupport);
+		}
+		return valueSupport;
+	}
+	
+	/**
+	 * Registers a listener for every value removed from or restored to a domain.
+	 * Listeners are dropped once the network changes.
+	 * @param listener listener to add
+	 */
+	public void addDomainListener(DomainListener listener)
+	{
+		domainListeners.add(listener);
+	}
+	
+	/**
+	 * Called by a variable of this network after <tt>value</tt> left its domain.
+	 */
+	void valueRemoved(Variable v, int value)
+	{
+		numRemovals++;
+		for(int i = 0; i < domainListeners.size(); i++)
+		{
+			domainListeners.get(i).valueRemoved(v, value);
+		}
+	}
+	
+	/**
+	 * Called by a variable of this network after <tt>value</tt> was put back into its domain.
+	 */
+	void valueRestored(Variable v, int value)
+	{
+		for(int i = 0; i < domainListeners.size(); i++)
+		{
+			domainListeners.get(i).valueRestored(v, value);
+		}
+	}
+	
+	/**
+	 * Called by a variable of this network after its domain was replaced by another.
+	 */
+	void domainReplaced(Variable v, Domain oldDomain, Domain newDomain)
+	{
+		if(domainListeners.isEmpty())
+		{
+			return;
+		}
+		for(int value = oldDomain.firstValue(); value != 0; value = oldDomain.nextValue(value))
+		{
+			if(!newDomain.contains(value))
 			{
-				outList.add(c);
+				valueRemoved(v, value);
+			}
+		}
+		for(int value = newDomain.firstValue(); value != 0; value = newDomain.nextValue(value))
+		{
+			if(!oldDomain.contains(value))
+			{
+				valueRestored(v, value);
 			}
 		}
-		return outList;
 	}
 	
 	/**
-	 * Returns the constraints that contain variables whose domains were 
-	 * modified since the last call to this method. 
-	 * 
-	 * After getting the constraints, it will reset each variable to
-	 * unmodified.
-	 * 
-	 * Note* The first call to this method returns the constraints containing
-	 * the initialized variables. 
-	 * 
-	 * @return ArrayList of modified constraints
+	 * Called by a variable of this network whenever its domain changes.
+	 * Queues the variable and the constraints containing it.
+	 * @param v the modified variable
 	 */
-	public List<Constraint> getModifiedConstraints()
+	void variableModified(Variable v)
 	{
-		List<Constraint> mConstraints = new ArrayList<Constraint>();
-
-		for (Constraint c : constraints)
+		buildIndex();
+		modifiedVariables.offer(v.getId());
+		for(int cId : constraintIds[v.getId()])
 		{
-			if (c.isModified())
+			for(int i = 0; i < constraintSubscribers.size(); i++)
 			{
-				mConstraints.add(c);
+				constraintSubscribers.get(i).offer(cId);
 			}
 		}
+	}
 
-		for (Variable v : getVariables())
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+	
+	/**
+	 * Builds the incidence and peer indexes if the network changed since they were last built.
+	 * Called before a network is copied from several threads at once, so they only read it.
+	 */
+	void buildIndex()
+	{
+		if(neighborIds != null)
+		{
+			return;
+		}
+		
+		int numVariables = variables.size();
+		
+		// incidence: constraints of each variable, in the order they were added
+		int[] counts = new int[numVariables];
+		maxArity = 0;
+		for(Constraint c : constraints)
+		{
+			maxArity = Math.max(maxArity, c.size());
+			for(Variable v : c.vars)
+			{
+				counts[v.getId()]++;
+			}
+		}
+		constraintIds = new int[numVariables][];
+		for(int id = 0; id < numVariables; id++)
+		{
+			constraintIds[id] = new int[counts[id]];
+			counts[id] = 0;
+		}
+		for(Constraint c : constraints)
+		{
+			for(Variable v : c.vars)
+			{
+				constraintIds[v.getId()][counts[v.getId()]++] = c.getId();
+			}
+		}
+		
+		// peers: union of the variables of those constraints
+		neighborIds = new int[numVariables][];
+		int[] stamp = new int[numVariables];
+		for(int id = 0; id < numVariables; id++)
+		{
+			int total = 0;
+			for(int cId : constraintIds[id])
+			{
+				total += constraints.get(cId).size();
+			}
+			int[] peers = new int[total];
+			int unique = 0;
+			stamp[id] = id + 1;
+			for(int cId : constraintIds[id])
+			{
+				for(Variable other : constraints.get(cId).vars)
+				{
+					if(stamp[other.getId()] != id + 1)
+					{
+						stamp[other.getId()] = id + 1;
+						peers[unique++] = other.getId();
+					}
+				}
+			}
+			peers = Arrays.copyOf(peers, unique);
+			Arrays.sort(peers);
+			neighborIds[id] = peers;
+		}
+		
+		weights = new int[constraints.size()];
+		Arrays.fill(weights, 1);
+		
+		maxValue = 0;
+		for(Variable v : variables)
 		{
-			v.setModified(false);
+			Domain d = v.getDomain();
+			for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+			{
+				maxValue = Math.max(maxValue, value);
+			}
 		}
-		return mConstraints;
+		
+		buildViews();
 	}
-
+	
+	/**
+	 * Builds the object views of the id indexes and the event queues, queuing every modified variable.
+	 */
+	private void buildViews()
+	{
+		int numVariables = variables.size();
+		neighbors = new ArrayList<List<Variable>>(numVariables);
+		constraintsOfVariable = new ArrayList<List<Constraint>>(numVariables);
+		for(int id = 0; id < numVariables; id++)
+		{
+			List<Variable> peerList = new ArrayList<Variable>(neighborIds[id].length);
+			for(int peer : neighborIds[id])
+			{
+				peerList.add(variables.get(peer));
+			}
+			neighbors.add(Collections.unmodifiableList(peerList));
+			
+			List<Constraint> constraintList = new ArrayList<Constraint>(constraintIds[id].length);
+			for(int cId : constraintIds[id])
+			{
+				constraintList.add(constraints.get(cId));
+			}
+			constraintsOfVariable.add(Collections.unmodifiableList(constraintList));
+		}
+		
+		modifiedVariables = new RingQueue(numVariables);
+		for(Variable v : variables)
+		{
+			if(v.isModified())
+			{
+				variableModified(v);
+			}
+		}
+	}
+	
+	private void clearIndex()
+	{
+		neighborIds = null;
+		neighbors = null;
+		constraintIds = null;
+		constraintsOfVariable = null;
+		weights = null;
+		modifiedVariables = null;
+		valueSupport = null;
+		domainListeners.clear();
+		constraintSubscribers.clear();
+	}
+	
 	//===============================================================================
 	// String Representation 
 	//===============================================================================
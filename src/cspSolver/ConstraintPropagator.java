@@ -0,0 +1,73 @@
+package cspSolver;
+
+/**
+ * Base of the propagators that work one constraint at a time. Each propagator has
+ * its own queue of modified constraints, see {@link ConstraintNetwork#subscribeToModifiedConstraints()},
+ * taken out on the first call to {@link #propagate()} with every constraint queued.
+ */
+public abstract class ConstraintPropagator {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	protected final ConstraintNetwork network;
+	private RingQueue modifiedConstraints;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param network network whose constraints are propagated
+	 */
+	protected ConstraintPropagator(ConstraintNetwork network)
+	{
+		this.network = network;
+	}
+
+	//===============================================================================
+	// Propagation
+	//===============================================================================
+
+	/**
+	 * Propagates every constraint modified since it was last propagated until none is left.
+	 * Removing values queues the constraints of the pruned variables again, so this
+	 * runs to a fixpoint. The first call propagates every constraint.
+	 *
+	 * A constraint that fails has its conflict weight increased, see
+	 * {@link ConstraintNetwork#increaseWeight(int)}, and the rest of the queue is
+	 * dropped, since the caller undoes the changes that queued it.
+	 * @return false if some constraint cannot be satisfied or the network's deadline has passed, true otherwise
+	 */
+	public boolean propagate()
+	{
+		if(modifiedConstraints == null)
+		{
+			modifiedConstraints = network.subscribeToModifiedConstraints();
+		}
+		while(!modifiedConstraints.isEmpty())
+		{
+			if(network.isPastDeadline())
+			{
+				modifiedConstraints.clear();
+				return false;
+			}
+			int cId = modifiedConstraints.poll();
+			if(!propagate(cId))
+			{
+				network.increaseWeight(cId);
+				modifiedConstraints.clear();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Propagates one constraint.
+	 * @param cId id of the constraint
+	 * @return false if the constraint cannot be satisfied, true otherwise
+	 */
+	public abstract boolean propagate(int cId);
+}
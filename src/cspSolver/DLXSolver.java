@@ -0,0 +1,372 @@
+package cspSolver;
+
+import sudoku.SudokuFile;
+
+/**
+ * Exact cover solver (Knuth's Algorithm X with dancing links) for plain Sudoku.
+ *
+ * A puzzle of size N = p*q becomes a 0/1 matrix with one row per (cell, value)
+ * candidate and 4*N*N columns: every cell holds a value, and every row, column and
+ * block holds every value once. Each matrix row has a node in exactly four columns.
+ * Nodes live in parallel int arrays (left, right, up, down, column) instead of
+ * objects; index 0 is the root of the column header list and 1..4*N*N are the
+ * column headers. The search always branches on the column with the fewest rows.
+ *
+ * Takes and returns the same {@link SudokuFile}s as {@link BTSolver}, and counts
+ * assignments and backtracks the same way so the two can be compared.
+ */
+public class DLXSolver implements Runnable{
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final SudokuFile sudokuGrid;
+	private SudokuFile solution;
+	private final int n;
+	private final int p;
+	private final int q;
+	private final int numColumns;
+
+	// dancing links, see the class comment
+	private final int[] left;
+	private final int[] right;
+	private final int[] up;
+	private final int[] down;
+	private final int[] column;
+	// matrix row (candidate) of every node, and rows left in every column
+	private final int[] rowOf;
+	private final int[] size;
+
+	// candidate chosen at each search depth
+	private final int[] chosen;
+	private boolean hasSolution = false;
+	private boolean isConsistent = true;
+
+	private int numAssignments;
+	private int numBacktracks;
+	private long startTime;
+	private long endTime;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * Builds the exact cover matrix for the empty board and covers the rows of the givens.
+	 * @param sf puzzle to solve
+	 */
+	public DLXSolver(SudokuFile sf)
+	{
+		this.sudokuGrid = sf;
+		this.solution = sf;
+		n = sf.getN();
+		p = sf.getP();
+		q = sf.getQ();
+		numColumns = 4 * n * n;
+
+		int numCandidates = n * n * n;
+		int numNodes = 1 + numColumns + 4 * numCandidates;
+		left = new int[numNodes];
+		right = new int[numNodes];
+		up = new int[numNodes];
+		down = new int[numNodes];
+		column = new int[numNodes];
+		rowOf = new int[numNodes];
+		size = new int[numColumns + 1];
+		chosen = new int[n * n];
+
+		for(int c = 0; c <= numColumns; c++)
+		{
+			left[c] = c == 0 ? numColumns : c - 1;
+			right[c] = c == numColumns ? 0 : c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+		}
+
+		int node = numColumns + 1;
+		for(int candidate = 0; candidate < numCandidates; candidate++)
+		{
+			int first = node;
+			for(int k = 0; k < 4; k++)
+			{
+				int c = columnOf(candidate, k);
+				column[node] = c;
+				rowOf[node] = candidate;
+				up[node] = up[c];
+				down[node] = c;
+				down[up[c]] = node;
+				up[c] = node;
+				size[c]++;
+				left[node] = k == 0 ? first + 3 : node - 1;
+				right[node] = k == 3 ? first : node + 1;
+				node++;
+			}
+		}
+
+		int[][] board = sf.getBoard();
+		for(int r = 0; r < n && isConsistent; r++)
+		{
+			for(int c = 0; c < n && isConsistent; c++)
+			{
+				if(board[r][c] != 0)
+				{
+					isConsistent = selectGiven(candidateOf(r, c, board[r][c]));
+				}
+			}
+		}
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return true if a solution has been found, false otherwise.
+	 */
+	public boolean hasSolution()
+	{
+		return hasSolution;
+	}
+
+	/**
+	 * @return solution if a solution has been found, otherwise returns the unsolved puzzle.
+	 */
+	public SudokuFile getSolution()
+	{
+		return solution;
+	}
+
+	public void printSolverStats()
+	{
+		System.out.println("Time taken:" + (endTime-startTime) + " ms");
+		System.out.println("Number of assignments: " + numAssignments);
+		System.out.println("Number of backtracks: " + numBacktracks);
+	}
+
+	/**
+	 * @return time the last solve took, in milliseconds
+	 */
+	public long getTimeTaken()
+	{
+		return endTime-startTime;
+	}
+
+	/**
+	 * @return number of candidates tried by the search, givens not included
+	 */
+	public int getNumAssignments()
+	{
+		return numAssignments;
+	}
+
+	/**
+	 * @return number of tried candidates that were taken back
+	 */
+	public int getNumBacktracks()
+	{
+		return numBacktracks;
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Candidate ids are r*N*N + c*N + (value - 1).
+	 */
+	private int candidateOf(int r, int c, int value)
+	{
+		return (r * n + c) * n + value - 1;
+	}
+
+	/**
+	 * @param k which of the four columns of the candidate: cell, row-value, column-value, block-value
+	 * @return header index of that column, 1..4*N*N
+	 */
+	private int columnOf(int candidate, int k)
+	{
+		int value = candidate % n;
+		int c = (candidate / n) % n;
+		int r = candidate / (n * n);
+		int block = (r / p * p) + c / q;
+		switch(k)
+		{
+		case 0:		return 1 + r * n + c;
+		case 1:		return 1 + n * n + r * n + value;
+		case 2:		return 1 + 2 * n * n + c * n + value;
+		default:	return 1 + 3 * n * n + block * n + value;
+		}
+	}
+
+	/**
+	 * Covers the four columns of a given's candidate for good.
+	 * @return false if another given already covered one of them
+	 */
+	private boolean selectGiven(int candidate)
+	{
+		for(int k = 0; k < 4; k++)
+		{
+			int c = columnOf(candidate, k);
+			if(right[left[c]] != c)
+			{
+				return false;
+			}
+		}
+		for(int k = 0; k < 4; k++)
+		{
+			cover(columnOf(candidate, k));
+		}
+		return true;
+	}
+
+	/**
+	 * Removes column c from the header list and every row of c from the other columns it is in.
+	 */
+	private void cover(int c)
+	{
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		for(int i = down[c]; i != c; i = down[i])
+		{
+			for(int j = right[i]; j != i; j = right[j])
+			{
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				size[column[j]]--;
+			}
+		}
+	}
+
+	/**
+	 * Exactly undoes {@link #cover(int)}, relinking in the reverse order.
+	 */
+	private void uncover(int c)
+	{
+		for(int i = up[c]; i != c; i = up[i])
+		{
+			for(int j = left[i]; j != i; j = left[j])
+			{
+				size[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		right[left[c]] = c;
+		left[right[c]] = c;
+	}
+
+	/**
+	 * @return the uncovered column with the fewest rows, lowest index first on ties, 0 if every column is covered
+	 */
+	private int chooseColumn()
+	{
+		int best = 0;
+		int bestSize = Integer.MAX_VALUE;
+		for(int c = right[0]; c != 0; c = right[c])
+		{
+			if(size[c] < bestSize)
+			{
+				best = c;
+				bestSize = size[c];
+				if(bestSize <= 1)
+				{
+					break;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Called when every column is covered: writes the givens and the chosen candidates into a new board.
+	 */
+	private void success(int depth)
+	{
+		hasSolution = true;
+		int[][] board = new int[n][n];
+		int[][] givens = sudokuGrid.getBoard();
+		for(int r = 0; r < n; r++)
+		{
+			for(int c = 0; c < n; c++)
+			{
+				board[r][c] = givens[r][c];
+			}
+		}
+		for(int i = 0; i < depth; i++)
+		{
+			int candidate = chosen[i];
+			board[candidate / (n * n)][(candidate / n) % n] = candidate % n + 1;
+		}
+		solution = new SudokuFile(n, p, q, board);
+	}
+
+	//===============================================================================
+	// Solver
+	//===============================================================================
+
+	/**
+	 * Method to start the solver
+	 */
+	public void solve()
+	{
+		startTime = System.currentTimeMillis();
+		if(isConsistent && !hasSolution)
+		{
+			search(0);
+		}
+		endTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Algorithm X. Every row of the chosen column is tried in turn; choosing a row
+	 * covers the other columns it is in.
+	 * @param depth number of candidates chosen so far
+	 */
+	private void search(int depth)
+	{
+		if(Thread.currentThread().isInterrupted())
+		{
+			return;
+		}
+		int c = chooseColumn();
+		if(c == 0)
+		{
+			success(depth);
+			return;
+		}
+		if(size[c] == 0)
+		{
+			return;
+		}
+
+		cover(c);
+		for(int r = down[c]; r != c && !hasSolution; r = down[r])
+		{
+			chosen[depth] = rowOf[r];
+			numAssignments++;
+			for(int j = right[r]; j != r; j = right[j])
+			{
+				cover(column[j]);
+			}
+
+			search(depth + 1);
+
+			for(int j = left[r]; j != r; j = left[j])
+			{
+				uncover(column[j]);
+			}
+			if(!hasSolution)
+			{
+				numBacktracks++;
+			}
+		}
+		uncover(c);
+	}
+
+	@Override
+	public void run() {
+		solve();
+	}
+}
@@ -0,0 +1,122 @@
+package cspSolver;
+
+/**
+ * Keeps, for every variable of a network, the number of its neighbors that are
+ * still unassigned (dynamic degree). As a {@link DomainListener} it notices when a
+ * variable becomes assigned or unassigned, including on undo, and adjusts the
+ * counts of that variable's neighbors, so no neighbor lists are walked when
+ * choosing a variable.
+ */
+public class DegreeIndex implements DomainListener {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final ConstraintNetwork network;
+
+	private final int[] unassignedNeighbors;
+	private final boolean[] assigned;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * Counts the unassigned neighbors of every variable and starts listening to the network.
+	 * @param network network to index
+	 */
+	public DegreeIndex(ConstraintNetwork network)
+	{
+		this.network = network;
+
+		int numVariables = network.getVariables().size();
+		unassignedNeighbors = new int[numVariables];
+		assigned = new boolean[numVariables];
+		for(Variable v : network.getVariables())
+		{
+			assigned[v.getId()] = v.isAssigned();
+		}
+		for(Variable v : network.getVariables())
+		{
+			int count = 0;
+			for(int neighborId : network.getNeighborIds(v))
+			{
+				if(!assigned[neighborId])
+				{
+					count++;
+				}
+			}
+			unassignedNeighbors[v.getId()] = count;
+		}
+		network.addDomainListener(this);
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @param v a variable of the network
+	 * @return number of unassigned variables sharing a constraint with v
+	 */
+	public int getDegree(Variable v)
+	{
+		return unassignedNeighbors[v.getId()];
+	}
+
+	/**
+	 * Same choice as scanning the unassigned variables in id order for the most unassigned neighbors.
+	 * @return unassigned variable with the most unassigned neighbors, lowest id first on ties, null if every variable is assigned
+	 */
+	public Variable getMaximum()
+	{
+		Variable max = null;
+		int maxDegree = -1;
+		for(int id = 0; id < assigned.length; id++)
+		{
+			if(!assigned[id] && unassignedNeighbors[id] > maxDegree)
+			{
+				max = network.getVariable(id);
+				maxDegree = unassignedNeighbors[id];
+			}
+		}
+		return max;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	@Override
+	public void valueRemoved(Variable v, int value)
+	{
+		update(v);
+	}
+
+	@Override
+	public void valueRestored(Variable v, int value)
+	{
+		update(v);
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	private void update(Variable v)
+	{
+		int id = v.getId();
+		boolean isAssigned = v.isAssigned();
+		if(assigned[id] == isAssigned)
+		{
+			return;
+		}
+		assigned[id] = isAssigned;
+		int change = isAssigned ? -1 : 1;
+		for(int neighborId : network.getNeighborIds(v))
+		{
+			unassignedNeighbors[neighborId] += change;
+		}
+	}
+}
@@ -3,126 +3,139 @@ package cspSolver;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Represents the domain of a variable, i.e. the possible values that each
- * variable may assign. 
+ * variable may assign.
+ *
+ * Values are the integers 1..N. Domain is implemented by
+ * {@link ListDomain} (an ArrayList of boxed Integers), {@link BitDomain}
+ * (a single long bitmask for N <= 64) and {@link MultiWordBitDomain}
+ * (a long[] bitmask for any N). Use {@link #create(Representation, List)}
+ * to build a domain of a given representation.
  */
-public class Domain implements Iterable<Integer>{
-	
+public abstract class Domain implements Iterable<Integer>{
+
+	/**
+	 * The ways a domain can be stored.
+	 */
+	public enum Representation { IntegerList, Bitmask, MultiWordBitmask };
+
 	//===============================================================================
 	// Properties
 	//===============================================================================
-	
-	private ArrayList<Integer> values = new ArrayList<Integer>();
+
 	private boolean modified;
-	
+
 	//===============================================================================
-	// Constructors
+	// Factory Methods
 	//===============================================================================
-	
-	/**
-	 * Constructs a domain with a single value
-	 * @param value the sole value within the domain
-	 */
-	public Domain(int value)
-	{
-		values.add(value);
-	}
-	
+
 	/**
-	 * Constructs a domain with an array of values
+	 * Constructs a domain of the given representation.
+	 * @param representation how the values are stored
 	 * @param values all possible values for the domain
+	 * @return a new domain containing <tt>values</tt>
 	 */
-	public Domain(int[] values)
+	public static Domain create(Representation representation, List<Integer> values)
 	{
-		for(int i = 0; i < values.length; i++)
+		switch(representation)
 		{
-			this.values.add(values[i]);
+		case Bitmask:		return new BitDomain(values);
+		case MultiWordBitmask:	return new MultiWordBitDomain(values);
+		case IntegerList:	return new ListDomain(values);
+		default:			return new ListDomain(values);
 		}
 	}
-	
-	/**
-	 * Constructs a domain with an ArrayList<Integer> of values
-	 * @param values all possible values for the domain
-	 */
-	public Domain(List<Integer> values)
-	{
-		this.values.clear();
-		this.values.addAll(values);
-	}
-	
+
 	/**
-	 * Copy Constructor. Used to keep a copy of assignments in the Trail.
-	 * @param d the domain to copy
-	 * @see Trail
+	 * @param n the largest value a domain will hold
+	 * @return the most compact representation able to hold the values 1..n
 	 */
-	public Domain(Domain d)
+	public static Representation defaultRepresentation(int n)
 	{
-		for(Integer value : d.getValues())
-		{
-			this.values.add(value);
-		}
+		return n <= BitDomain.MAX_VALUE ? Representation.Bitmask : Representation.MultiWordBitmask;
 	}
-	
+
 	//===============================================================================
 	// Accessors
 	//===============================================================================
-	
+
 	/**
 	 * *Note, Domain is iterable. You can use
 	 * 	for(Integer i : Domain)
 	 *  {
 	 *  	...
 	 *  }
-	 *  
+	 *
 	 * @return ArrayList of values in Domain
 	 */
-	public ArrayList<Integer> getValues()
-	{
-		return values;
-	}
-	
+	public abstract ArrayList<Integer> getValues();
+
 	/**
 	 * Checks if a value exists within the domain
 	 * @param value to check
 	 * @return true if <tt>value</tt> exists within the domain, false otherwise.
 	 */
-	public boolean contains(int value)
-	{
-		if (values.contains(value))
-		{
-			return true;
-		}
-		return false;
-	}
-	
-	/** 
+	public abstract boolean contains(int value);
+
+	/**
 	 * @return number of values in the domain
 	 */
-	public int size()
-	{
-		return values.size();
-	}
-	
+	public abstract int size();
+
 	/**
-	 * @return true if no values are contained in the domain. 
+	 * @return the smallest value in the domain, 0 if the domain is empty.
+	 */
+	public abstract int firstValue();
+
+	/**
+	 * Used to walk the domain without boxing:
+	 * 	for(int i = d.firstValue(); i != 0; i = d.nextValue(i))
+	 *
+	 * @param value a value, not necessarily in the domain
+	 * @return the smallest value in the domain greater than <tt>value</tt>, 0 if there is none.
+	 */
+	public abstract int nextValue(int value);
+
+	/**
+	 * @return true if no values are contained in the domain.
 	 */
 	public boolean isEmpty()
 	{
-		return values.isEmpty();
+		return size() == 0;
 	}
-	
+
 	/**
 	 * Returns whether or not the domain has been modified.
-	 * 
+	 *
 	 * @return true if the domain has been modified
 	 */
 	public boolean isModified()
 	{
 		return modified;
 	}
+
+	/**
+	 * Copy. Used to keep a copy of assignments in the Trail.
+	 * @return a deep copy of this domain with the same representation
+	 * @see Trail
+	 */
+	public abstract Domain copy();
+
+	/**
+	 * @param value the sole value within the new domain
+	 * @return a new domain with the same representation as this one containing only <tt>value</tt>
+	 */
+	public abstract Domain singleton(int value);
 	
+	/**
+	 * Used to measure the Trail.
+	 * @return approximate memory held by this domain in bytes, assuming compressed references
+	 */
+	public abstract int sizeInBytes();
+
 	//===============================================================================
 	// Modifiers
 	//===============================================================================
@@ -130,24 +143,19 @@ public class Domain implements Iterable<Integer>{
 	/**
 	 * Removes <tt>value</tt> from the domain.
 	 * @param value the int to be removed
+	 * @return true if the value was in the domain
 	 */
-	public boolean remove(int value)
-	{
-		Integer v = value;
-		
-		if(!contains(value))
-		{
-			return false;
-		}
-		
-		setModified(true);
-		values.remove(v);
-		return true;
-	}
+	public abstract boolean remove(int value);
 	
+	/**
+	 * Puts <tt>value</tt> back into the domain. Used by the Trail to undo a removal.
+	 * @param value the int to be added
+	 */
+	public abstract void add(int value);
+
 	/**
 	 * Sets modified flag.
-	 * @param modified value to set the modified flag. 
+	 * @param modified value to set the modified flag.
 	 */
 	public void setModified(boolean modified)
 	{
@@ -157,21 +165,43 @@ public class Domain implements Iterable<Integer>{
 	//===============================================================================
 	// Iterator
 	//===============================================================================
-	
+
+	/**
+	 * Iterates the values in ascending order.
+	 */
 	@Override
 	public Iterator<Integer> iterator() {
-		return values.iterator();
+		return new Iterator<Integer>() {
+
+			private int next = firstValue();
+
+			@Override
+			public boolean hasNext() {
+				return next != 0;
+			}
+
+			@Override
+			public Integer next() {
+				if(next == 0)
+				{
+					throw new NoSuchElementException();
+				}
+				int value = next;
+				next = nextValue(value);
+				return value;
+			}
+		};
 	}
-	
+
 	//===============================================================================
 	// String representation
 	//===============================================================================
-	
+
 	public String toString()
 	{
 		StringBuilder sb = new StringBuilder("{");
 		String delim = "";
-		for (Integer i : values)
+		for (Integer i : this)
 		{
 			sb.append(delim).append(i);
 			delim = ",";
@@ -180,4 +210,3 @@ public class Domain implements Iterable<Integer>{
 		return sb.toString();
 	}
 }
-
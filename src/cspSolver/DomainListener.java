@@ -0,0 +1,22 @@
+package cspSolver;
+
+/**
+ * Told by a ConstraintNetwork about every value leaving or re-entering the domain
+ * of one of its variables, including changes made by the Trail on undo. The domain
+ * has already changed when a method is called.
+ * @see ConstraintNetwork#addDomainListener(DomainListener)
+ */
+public interface DomainListener {
+
+	/**
+	 * @param v variable that lost a value
+	 * @param value the value removed
+	 */
+	void valueRemoved(Variable v, int value);
+
+	/**
+	 * @param v variable that got a value back
+	 * @param value the value put back
+	 */
+	void valueRestored(Variable v, int value);
+}
@@ -0,0 +1,160 @@
+package cspSolver;
+
+/**
+ * Buckets the variables of a network by domain size, so that the unassigned
+ * variable with the fewest remaining values can be found without scanning every
+ * variable. Each bucket is a bitset over variable ids; a count per bucket finds the
+ * smallest non-empty bucket, and the lowest set bit in it the variable.
+ *
+ * As a {@link DomainListener} the index moves a variable between buckets whenever
+ * its domain changes, including on undo, so it always matches the current domains.
+ * No domain may grow beyond its size when the index is built, so build it before
+ * the first breadcrumb is placed.
+ */
+public class DomainSizeIndex implements DomainListener {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final ConstraintNetwork network;
+
+	// buckets[size] holds a bit per variable id, counts[size] the number of bits set
+	private final long[][] buckets;
+	private final int[] counts;
+	// the bucket each variable is filed under
+	private final int[] sizeOf;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * Files every variable under its current domain size and starts listening to the network.
+	 * @param network network to index
+	 */
+	public DomainSizeIndex(ConstraintNetwork network)
+	{
+		this.network = network;
+
+		int numVariables = network.getVariables().size();
+		int maxSize = 0;
+		for(Variable v : network.getVariables())
+		{
+			maxSize = Math.max(maxSize, v.size());
+		}
+		int words = (numVariables + Long.SIZE - 1) / Long.SIZE;
+		buckets = new long[maxSize + 1][words];
+		counts = new int[maxSize + 1];
+		sizeOf = new int[numVariables];
+		for(Variable v : network.getVariables())
+		{
+			add(v.getId(), v.size());
+		}
+		network.addDomainListener(this);
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * Same choice as scanning the variables in id order for the smallest domain
+	 * of any size but one, so a wiped-out variable comes first.
+	 * @return the unassigned variable with the fewest values, lowest id first on ties, null if every variable is assigned
+	 */
+	public Variable getMinimum()
+	{
+		for(int size = 0; size < counts.length; size++)
+		{
+			// size 1 holds the assigned variables
+			if(size == 1 || counts[size] == 0)
+			{
+				continue;
+			}
+			long[] bucket = buckets[size];
+			for(int w = 0; w < bucket.length; w++)
+			{
+				if(bucket[w] != 0)
+				{
+					return network.getVariable(w * Long.SIZE + Long.numberOfTrailingZeros(bucket[w]));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param degrees unassigned neighbor counts used to break ties
+	 * @return among the unassigned variables with the fewest values, the one with the most 
+	 * unassigned neighbors, lowest id first on ties; null if every variable is assigned.
+	 * A wiped-out variable counts as unassigned with no values, as in {@link #getMinimum()}.
+	 */
+	public Variable getMinimum(DegreeIndex degrees)
+	{
+		for(int size = 0; size < counts.length; size++)
+		{
+			if(size == 1 || counts[size] == 0)
+			{
+				continue;
+			}
+			Variable best = null;
+			int bestDegree = -1;
+			long[] bucket = buckets[size];
+			for(int w = 0; w < bucket.length; w++)
+			{
+				for(long bits = bucket[w]; bits != 0; bits &= bits - 1)
+				{
+					Variable v = network.getVariable(w * Long.SIZE + Long.numberOfTrailingZeros(bits));
+					int degree = degrees.getDegree(v);
+					if(degree > bestDegree)
+					{
+						best = v;
+						bestDegree = degree;
+					}
+				}
+			}
+			return best;
+		}
+		return null;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	@Override
+	public void valueRemoved(Variable v, int value)
+	{
+		update(v);
+	}
+
+	@Override
+	public void valueRestored(Variable v, int value)
+	{
+		update(v);
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	private void update(Variable v)
+	{
+		int id = v.getId();
+		int size = v.size();
+		if(sizeOf[id] != size)
+		{
+			buckets[sizeOf[id]][id >>> 6] &= ~(1L << id);
+			counts[sizeOf[id]]--;
+			add(id, size);
+		}
+	}
+
+	private void add(int id, int size)
+	{
+		sizeOf[id] = size;
+		buckets[size][id >>> 6] |= 1L << id;
+		counts[size]++;
+	}
+}
@@ -0,0 +1,303 @@
+package cspSolver;
+
+/**
+ * Fish patterns: X-Wing (size 2), Swordfish (3) and Jellyfish (4). If a value
+ * still has to be placed in k rows and every place left for it in those rows lies
+ * in the same k columns, then those columns get the value from those rows, and the
+ * value can be removed from the rest of the columns. The same holds with rows and
+ * columns swapped. Fewer than k columns for k rows is a failure.
+ *
+ * Rows and columns are found with {@link Variable#row()} and {@link Variable#col()}.
+ * For every value the propagator builds the bitmask of columns allowing it in each
+ * row and of rows allowing it in each column, then enumerates sets of up to the
+ * maximum size by OR-ing those masks. Every call looks at the whole board, so this
+ * is meant to run only after cheaper propagators have reached a fixpoint.
+ * All working arrays are allocated up front.
+ *
+ * Boards must have at most 64 rows and columns, see {@link #supports(ConstraintNetwork)}.
+ */
+public class FishPropagator {
+
+	/**
+	 * Largest fish size that can be searched for.
+	 */
+	public static final int MAX_SIZE = 4;
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final ConstraintNetwork network;
+	private final int maxSize;
+	private final int numRows;
+	private final int numCols;
+	private final int maxValue;
+
+	// cells[row][col], null where the network has no variable
+	private final Variable[][] cells;
+
+	// for the value being searched: lines[0] holds per row the columns allowing it,
+	// lines[1] per column the rows allowing it; placed[0] and placed[1] the rows and
+	// columns where it is already assigned
+	private final long[][][] lines;
+	private final long[][] placed;
+	private final int[] chosen = new int[MAX_SIZE];
+	private boolean failed;
+
+	private long numCalls;
+	private long nanos;
+	private long numFish;
+	private long numRemovals;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param network network whose rows and columns are searched
+	 * @param maxSize largest fish to look for, 2..{@link #MAX_SIZE}
+	 * @throws IllegalArgumentException if the network is not supported, see {@link #supports(ConstraintNetwork)}
+	 */
+	public FishPropagator(ConstraintNetwork network, int maxSize)
+	{
+		if(maxSize < 2 || maxSize > MAX_SIZE)
+		{
+			throw new IllegalArgumentException("Fish size must be in 2.." + MAX_SIZE + ", got " + maxSize);
+		}
+		this.network = network;
+		this.maxSize = maxSize;
+
+		numRows = numLines(network, 0);
+		numCols = numLines(network, 1);
+		if(numRows > Long.SIZE || numCols > Long.SIZE)
+		{
+			throw new IllegalArgumentException("Fish need at most " + Long.SIZE + " rows and columns, got " + numRows + " x " + numCols);
+		}
+		maxValue = network.getMaxValue();
+
+		cells = new Variable[numRows][numCols];
+		for(Variable v : network.getVariables())
+		{
+			cells[v.row()][v.col()] = v;
+		}
+		lines = new long[2][maxValue + 1][Math.max(numRows, numCols)];
+		placed = new long[2][maxValue + 1];
+	}
+
+	/**
+	 * @param network network to check
+	 * @return true if the rows and the columns of the network fit in a long bitmask
+	 */
+	public static boolean supports(ConstraintNetwork network)
+	{
+		return numLines(network, 0) <= Long.SIZE && numLines(network, 1) <= Long.SIZE;
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return number of calls to {@link #propagate()}
+	 */
+	public long getNumCalls()
+	{
+		return numCalls;
+	}
+
+	/**
+	 * @return total time spent in {@link #propagate()}, in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+
+	/**
+	 * @return number of fish that removed at least one value
+	 */
+	public long getNumFish()
+	{
+		return numFish;
+	}
+
+	/**
+	 * @return number of values removed from domains so far
+	 */
+	public long getNumRemovals()
+	{
+		return numRemovals;
+	}
+
+	//===============================================================================
+	// Propagation
+	//===============================================================================
+
+	/**
+	 * Applies every fish of size 2 up to the maximum, for every value, once.
+	 * Compare {@link #getNumRemovals()} before and after to see whether it did anything.
+	 * @return false if some value has fewer columns than rows left to go in, or the other way round, 
+	 * or the network's deadline has passed, true otherwise
+	 */
+	public boolean propagate()
+	{
+		long start = System.nanoTime();
+		numCalls++;
+		collect();
+		failed = false;
+		for(int value = 1; value <= maxValue && !failed; value++)
+		{
+			if(network.isPastDeadline())
+			{
+				failed = true;
+				break;
+			}
+			for(int k = 2; k <= maxSize && !failed; k++)
+			{
+				search(0, value, k, 0, 0, 0L);
+				search(1, value, k, 0, 0, 0L);
+			}
+		}
+		nanos += System.nanoTime() - start;
+		return !failed;
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * @param orientation 0 for rows, 1 for columns
+	 * @return number of rows or columns of the network
+	 */
+	private static int numLines(ConstraintNetwork network, int orientation)
+	{
+		int lines = 0;
+		for(Variable v : network.getVariables())
+		{
+			lines = Math.max(lines, (orientation == 0 ? v.row() : v.col()) + 1);
+		}
+		return lines;
+	}
+
+	/**
+	 * Builds the row and column masks of every value from the current domains.
+	 */
+	private void collect()
+	{
+		for(int value = 1; value <= maxValue; value++)
+		{
+			placed[0][value] = 0;
+			placed[1][value] = 0;
+			for(int i = 0; i < lines[0][value].length; i++)
+			{
+				lines[0][value][i] = 0;
+				lines[1][value][i] = 0;
+			}
+		}
+		for(int row = 0; row < numRows; row++)
+		{
+			for(int col = 0; col < numCols; col++)
+			{
+				Variable v = cells[row][col];
+				if(v == null)
+				{
+					continue;
+				}
+				Domain d = v.getDomain();
+				if(v.isAssigned())
+				{
+					placed[0][d.firstValue()] |= 1L << row;
+					placed[1][d.firstValue()] |= 1L << col;
+				}
+				for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+				{
+					lines[0][value][row] |= 1L << col;
+					lines[1][value][col] |= 1L << row;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Chooses the remaining base lines of a fish of size k in increasing order.
+	 * @param orientation 0 for rows as base lines, 1 for columns
+	 * @param depth number of base lines chosen so far
+	 * @param start first line that may be chosen next
+	 * @param cover cross lines allowing the value in the base lines chosen so far
+	 */
+	private void search(int orientation, int value, int k, int depth, int start, long cover)
+	{
+		if(depth == k)
+		{
+			apply(orientation, value, k, cover);
+			return;
+		}
+		long[] base = lines[orientation][value];
+		int numLines = orientation == 0 ? numRows : numCols;
+		for(int line = start; line <= numLines - (k - depth) && !failed; line++)
+		{
+			if((placed[orientation][value] & (1L << line)) != 0)
+			{
+				continue;
+			}
+			int count = Long.bitCount(base[line]);
+			if(count < 2 || count > k)
+			{
+				continue;
+			}
+			long next = cover | base[line];
+			if(Long.bitCount(next) > k)
+			{
+				continue;
+			}
+			chosen[depth] = line;
+			search(orientation, value, k, depth + 1, line + 1, next);
+		}
+	}
+
+	/**
+	 * Removes the value from the cover lines outside the base lines.
+	 */
+	private void apply(int orientation, int value, int k, long cover)
+	{
+		if(Long.bitCount(cover) < k)
+		{
+			failed = true;
+			return;
+		}
+
+		long baseLines = 0;
+		for(int i = 0; i < k; i++)
+		{
+			baseLines |= 1L << chosen[i];
+		}
+
+		boolean removed = false;
+		long[] crossLines = lines[1 - orientation][value];
+		for(long m = cover; m != 0; m &= m - 1)
+		{
+			int cross = Long.numberOfTrailingZeros(m);
+			long outside = crossLines[cross] & ~baseLines;
+			for(long o = outside; o != 0; o &= o - 1)
+			{
+				int line = Long.numberOfTrailingZeros(o);
+				Variable v = orientation == 0 ? cells[line][cross] : cells[cross][line];
+				v.removeValueFromDomain(value);
+				numRemovals++;
+				removed = true;
+				lines[orientation][value][line] &= ~(1L << cross);
+				if(v.getDomain().isEmpty())
+				{
+					failed = true;
+					return;
+				}
+			}
+			crossLines[cross] &= baseLines;
+		}
+		if(removed)
+		{
+			numFish++;
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package cspSolver;
+
+/**
+ * Hidden subsets within each constraint (row, column or block): if k values can
+ * only go in the same k variables of a constraint, those variables cannot take any
+ * other value. With k = 1 this is a hidden single. Fewer than k places for k values
+ * is a failure.
+ *
+ * For the constraint being searched the propagator builds, for every value, the
+ * bitmask of positions in the constraint that still allow it, and enumerates value
+ * subsets by OR-ing those masks. Only constraints modified since they were last
+ * looked at are searched, and all working arrays are allocated up front.
+ *
+ * Only constraints with as many variables as there are values are searched, since
+ * otherwise a value need not be placed at all. Constraints must have at most 64
+ * variables and values must lie in 1..64, see {@link #supports(ConstraintNetwork)}.
+ */
+public class HiddenSubsetPropagator extends ConstraintPropagator {
+
+	/**
+	 * Largest subset size that can be searched for.
+	 */
+	public static final int MAX_SUBSET_SIZE = 4;
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int maxSubsetSize;
+	private final int maxValue;
+
+	// the variables of the constraint being searched, and the positions allowing each value
+	private final Variable[] cells;
+	private final long[] positions;
+	private final int[] chosen = new int[MAX_SUBSET_SIZE];
+	// the values chosen, as a one word set
+	private final long[] subset = new long[1];
+	private boolean failed;
+
+	private long numCalls;
+	private long nanos;
+	private long numSubsets;
+	private long numRemovals;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param network network whose constraints are searched
+	 * @param maxSubsetSize largest subset size to look for, 1..{@link #MAX_SUBSET_SIZE}
+	 * @throws IllegalArgumentException if the network is not supported, see {@link #supports(ConstraintNetwork)}
+	 */
+	public HiddenSubsetPropagator(ConstraintNetwork network, int maxSubsetSize)
+	{
+		super(network);
+		if(maxSubsetSize < 1 || maxSubsetSize > MAX_SUBSET_SIZE)
+		{
+			throw new IllegalArgumentException("Subset size must be in 1.." + MAX_SUBSET_SIZE + ", got " + maxSubsetSize);
+		}
+		if(!supports(network))
+		{
+			throw new IllegalArgumentException("Hidden subsets need at most " + Long.SIZE + " variables per constraint and values in 1.." 
+					+ BitDomain.MAX_VALUE + ", got " + network.getMaxArity() + " variables and values up to " + network.getMaxValue());
+		}
+		this.maxSubsetSize = maxSubsetSize;
+
+		maxValue = network.getMaxValue();
+		cells = new Variable[network.getMaxArity()];
+		positions = new long[maxValue + 1];
+	}
+
+	/**
+	 * @param network network to check
+	 * @return true if the positions of every constraint and every value fit in a long bitmask
+	 */
+	public static boolean supports(ConstraintNetwork network)
+	{
+		return network.getMaxArity() <= Long.SIZE && network.getMaxValue() <= BitDomain.MAX_VALUE;
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return number of calls to {@link #propagate()}, one per search node
+	 */
+	public long getNumCalls()
+	{
+		return numCalls;
+	}
+
+	/**
+	 * @return total time spent in {@link #propagate()}, in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+
+	/**
+	 * @return number of hidden subsets that removed at least one value
+	 */
+	public long getNumSubsets()
+	{
+		return numSubsets;
+	}
+
+	/**
+	 * @return number of values removed from domains so far
+	 */
+	public long getNumRemovals()
+	{
+		return numRemovals;
+	}
+
+	//===============================================================================
+	// Propagation
+	//===============================================================================
+
+	/**
+	 * Same as {@link ConstraintPropagator#propagate()}, timed for {@link #getNanos()}.
+	 */
+	@Override
+	public boolean propagate()
+	{
+		long start = System.nanoTime();
+		numCalls++;
+		boolean consistent = super.propagate();
+		nanos += System.nanoTime() - start;
+		return consistent;
+	}
+
+	@Override
+	public boolean propagate(int cId)
+	{
+		return propagate(network.getConstraint(cId));
+	}
+
+	/**
+	 * Applies every hidden subset of size up to the maximum in one constraint.
+	 * @param c constraint to search
+	 * @return false if k values have fewer than k places left, true otherwise
+	 */
+	public boolean propagate(Constraint c)
+	{
+		int numCells = c.size();
+		if(numCells < maxValue)
+		{
+			return true;
+		}
+
+		for(int value = 1; value <= maxValue; value++)
+		{
+			positions[value] = 0;
+		}
+		for(int i = 0; i < numCells; i++)
+		{
+			cells[i] = c.vars.get(i);
+			Domain d = cells[i].getDomain();
+			for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+			{
+				positions[value] |= 1L << i;
+			}
+		}
+
+		failed = false;
+		for(int k = 1; k <= maxSubsetSize && k < numCells && !failed; k++)
+		{
+			search(k, 0, 1, 0L);
+		}
+		return !failed;
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Chooses the remaining values of a subset of size k in increasing order.
+	 * @param k size of the subset
+	 * @param depth number of values chosen so far
+	 * @param start smallest value that may be chosen next
+	 * @param union positions allowing the values chosen so far
+	 */
+	private void search(int k, int depth, int start, long union)
+	{
+		if(depth == k)
+		{
+			apply(k, union);
+			return;
+		}
+		for(int value = start; value <= maxValue - (k - depth) + 1 && !failed; value++)
+		{
+			int count = Long.bitCount(positions[value]);
+			if(count == 0)
+			{
+				failed = true;
+				return;
+			}
+			// a value with one place is only a subset by itself, and is done once placed
+			if(count > k || (count == 1 && (k > 1 || cells[Long.numberOfTrailingZeros(positions[value])].isAssigned())))
+			{
+				continue;
+			}
+			long next = union | positions[value];
+			if(Long.bitCount(next) > k)
+			{
+				continue;
+			}
+			chosen[depth] = value;
+			search(k, depth + 1, value + 1, next);
+		}
+	}
+
+	/**
+	 * Removes every other value from the variables holding a hidden subset.
+	 */
+	private void apply(int k, long union)
+	{
+		if(Long.bitCount(union) < k)
+		{
+			failed = true;
+			return;
+		}
+
+		subset[0] = 0;
+		for(int j = 0; j < k; j++)
+		{
+			subset[0] |= 1L << (chosen[j] - 1);
+		}
+
+		boolean removed = false;
+		for(long m = union; m != 0; m &= m - 1)
+		{
+			int i = Long.numberOfTrailingZeros(m);
+			long dropped = MultiWordBitDomain.word(cells[i].getDomain(), 0) & ~subset[0];
+			if(dropped == 0)
+			{
+				continue;
+			}
+			for(long d = dropped; d != 0; d &= d - 1)
+			{
+				positions[Long.numberOfTrailingZeros(d) + 1] &= ~(1L << i);
+			}
+			numRemovals += cells[i].retainValues(subset);
+			removed = true;
+		}
+		if(removed)
+		{
+			numSubsets++;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package cspSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Intersection reduction between blocks and lines (pointing pairs and box-line
+ * reduction). If every variable of a block that allows a value lies in one row or
+ * column, the value can be removed from the rest of that row or column; likewise,
+ * if every variable of a row or column that allows a value lies in one block, the
+ * value can be removed from the rest of the block.
+ *
+ * Rows, columns and blocks are told apart with {@link Variable#row()},
+ * {@link Variable#col()} and {@link Variable#block()}, and for every block and line
+ * that meet the positions of the shared variables in both are precomputed as
+ * bitmasks, so any p x q block shape works. A constraint whose variables share a
+ * block is taken as a block even if they also share a row or column, unless it is
+ * that whole row or column. When p or q is 1 every block is a whole row or column, so
+ * there are no intersections and the propagator does nothing. Only constraints
+ * modified since they were last looked at are searched, and all working arrays are
+ * allocated up front.
+ *
+ * Constraints must have at most 64 variables, see {@link #supports(ConstraintNetwork)}.
+ */
+public class IntersectionPropagator extends ConstraintPropagator {
+
+	private static final int ROW = 0, COL = 1, BLOCK = 2, OTHER = 3;
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int maxValue;
+
+	// intersection i joins block blockOf[i] and line lineOf[i]. blockMask[i] holds the
+	// positions of the shared variables within the block, lineMask[i] within the line.
+	private final int[] blockOf;
+	private final int[] lineOf;
+	private final long[] blockMask;
+	private final long[] lineMask;
+	// ids of the intersections each constraint takes part in
+	private final int[][] intersectionsOf;
+
+	// positions allowing each value in the constraint being searched
+	private final long[] positions;
+
+	private long numRemovals;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param network network whose blocks and lines are searched
+	 * @throws IllegalArgumentException if the network is not supported, see {@link #supports(ConstraintNetwork)}
+	 */
+	public IntersectionPropagator(ConstraintNetwork network)
+	{
+		super(network);
+		if(!supports(network))
+		{
+			throw new IllegalArgumentException("Intersection reduction needs at most " + Long.SIZE + " variables per constraint, got " + network.getMaxArity());
+		}
+		List<Constraint> constraints = network.getConstraints();
+		int numConstraints = constraints.size();
+		int numLines = 0;
+		for(Variable v : network.getVariables())
+		{
+			numLines = Math.max(numLines, Math.max(v.row(), v.col()) + 1);
+		}
+		// number of variables in each row and in each column
+		int[] rowSize = new int[numLines];
+		int[] colSize = new int[numLines];
+		for(Variable v : network.getVariables())
+		{
+			rowSize[v.row()]++;
+			colSize[v.col()]++;
+		}
+		int[] kind = new int[numConstraints];
+		for(Constraint c : constraints)
+		{
+			kind[c.getId()] = kindOf(c, rowSize, colSize);
+		}
+		maxValue = network.getMaxValue();
+		positions = new long[maxValue + 1];
+
+		List<long[]> found = new ArrayList<long[]>();
+		for(Constraint block : constraints)
+		{
+			if(kind[block.getId()] != BLOCK)
+			{
+				continue;
+			}
+			for(Constraint line : constraints)
+			{
+				int lineKind = kind[line.getId()];
+				if(lineKind != ROW && lineKind != COL)
+				{
+					continue;
+				}
+				long inBlock = 0, inLine = 0;
+				for(int i = 0; i < block.size(); i++)
+				{
+					int j = line.vars.indexOf(block.vars.get(i));
+					if(j != -1)
+					{
+						inBlock |= 1L << i;
+						inLine |= 1L << j;
+					}
+				}
+				if(inBlock != 0)
+				{
+					found.add(new long[] { block.getId(), line.getId(), inBlock, inLine });
+				}
+			}
+		}
+
+		int numIntersections = found.size();
+		blockOf = new int[numIntersections];
+		lineOf = new int[numIntersections];
+		blockMask = new long[numIntersections];
+		lineMask = new long[numIntersections];
+		int[] counts = new int[numConstraints];
+		for(int i = 0; i < numIntersections; i++)
+		{
+			long[] f = found.get(i);
+			blockOf[i] = (int) f[0];
+			lineOf[i] = (int) f[1];
+			blockMask[i] = f[2];
+			lineMask[i] = f[3];
+			counts[blockOf[i]]++;
+			counts[lineOf[i]]++;
+		}
+		intersectionsOf = new int[numConstraints][];
+		for(int cId = 0; cId < numConstraints; cId++)
+		{
+			intersectionsOf[cId] = new int[counts[cId]];
+			counts[cId] = 0;
+		}
+		for(int i = 0; i < numIntersections; i++)
+		{
+			intersectionsOf[blockOf[i]][counts[blockOf[i]]++] = i;
+			intersectionsOf[lineOf[i]][counts[lineOf[i]]++] = i;
+		}
+	}
+
+	/**
+	 * @param network network to check
+	 * @return true if the positions of every constraint fit in a long bitmask
+	 */
+	public static boolean supports(ConstraintNetwork network)
+	{
+		return network.getMaxArity() <= Long.SIZE;
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return number of values removed from domains so far
+	 */
+	public long getNumRemovals()
+	{
+		return numRemovals;
+	}
+
+	//===============================================================================
+	// Propagation
+	//===============================================================================
+
+	/**
+	 * Applies every reduction from one block or line to the constraints it meets.
+	 * @param cId id of the constraint to search
+	 * @return false if a domain is wiped out, true otherwise
+	 */
+	@Override
+	public boolean propagate(int cId)
+	{
+		int[] intersections = intersectionsOf[cId];
+		if(intersections.length == 0)
+		{
+			return true;
+		}
+
+		Constraint c = network.getConstraint(cId);
+		for(int value = 1; value <= maxValue; value++)
+		{
+			positions[value] = 0;
+		}
+		for(int i = 0; i < c.size(); i++)
+		{
+			Domain d = c.vars.get(i).getDomain();
+			for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+			{
+				positions[value] |= 1L << i;
+			}
+		}
+
+		for(int i : intersections)
+		{
+			boolean fromBlock = blockOf[i] == cId;
+			long shared = fromBlock ? blockMask[i] : lineMask[i];
+			Constraint other = network.getConstraint(fromBlock ? lineOf[i] : blockOf[i]);
+			long otherShared = fromBlock ? lineMask[i] : blockMask[i];
+			for(int value = 1; value <= maxValue; value++)
+			{
+				long p = positions[value];
+				if(p == 0 || (p & ~shared) != 0)
+				{
+					continue;
+				}
+				if(!removeOutside(other, otherShared, value))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Removes <tt>value</tt> from every variable of c whose position is not in <tt>keep</tt>.
+	 * @return false if a domain is wiped out, true otherwise
+	 */
+	private boolean removeOutside(Constraint c, long keep, int value)
+	{
+		for(int i = 0; i < c.size(); i++)
+		{
+			if((keep & (1L << i)) != 0)
+			{
+				continue;
+			}
+			Variable v = c.vars.get(i);
+			if(v.getDomain().contains(value))
+			{
+				v.removeValueFromDomain(value);
+				numRemovals++;
+				if(v.getDomain().isEmpty())
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param rowSize number of variables in each row
+	 * @param colSize number of variables in each column
+	 * @return BLOCK if every variable of c shares a block and c is not a whole row or column,
+	 * otherwise ROW or COL if every variable shares that coordinate, OTHER if none of these hold
+	 */
+	private static int kindOf(Constraint c, int[] rowSize, int[] colSize)
+	{
+		if(c.size() == 0)
+		{
+			return OTHER;
+		}
+		boolean sameRow = true, sameCol = true, sameBlock = true;
+		Variable first = c.vars.get(0);
+		for(Variable v : c.vars)
+		{
+			sameRow &= v.row() == first.row();
+			sameCol &= v.col() == first.col();
+			sameBlock &= v.block() == first.block();
+		}
+		boolean wholeLine = (sameRow && c.size() == rowSize[first.row()]) || (sameCol && c.size() == colSize[first.col()]);
+		if(sameBlock && !wholeLine)
+		{
+			return BLOCK;
+		}
+		if(sameRow)
+		{
+			return ROW;
+		}
+		if(sameCol)
+		{
+			return COL;
+		}
+		return OTHER;
+	}
+}
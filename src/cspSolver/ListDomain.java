@@ -0,0 +1,190 @@
+package cspSolver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Domain backed by an ArrayList of boxed Integers. Values are kept in the
+ * order they were given.
+ */
+public class ListDomain extends Domain{
+	
+	//===============================================================================
+	// Properties
+	//===============================================================================
+	
+	private ArrayList<Integer> values = new ArrayList<Integer>();
+	
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+	
+	/**
+	 * Constructs a domain with a single value
+	 * @param value the sole value within the domain
+	 */
+	public ListDomain(int value)
+	{
+		values.add(value);
+	}
+	
+	/**
+	 * Constructs a domain with an array of values
+	 * @param values all possible values for the domain
+	 */
+	public ListDomain(int[] values)
+	{
+		for(int i = 0; i < values.length; i++)
+		{
+			this.values.add(values[i]);
+		}
+	}
+	
+	/**
+	 * Constructs a domain with an ArrayList<Integer> of values
+	 * @param values all possible values for the domain
+	 */
+	public ListDomain(List<Integer> values)
+	{
+		this.values.clear();
+		this.values.addAll(values);
+	}
+	
+	/**
+	 * Copy Constructor. Used to keep a copy of assignments in the Trail.
+	 * @param d the domain to copy
+	 * @see Trail
+	 */
+	public ListDomain(ListDomain d)
+	{
+		for(Integer value : d.getValues())
+		{
+			this.values.add(value);
+		}
+	}
+	
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+	
+	@Override
+	public ArrayList<Integer> getValues()
+	{
+		return values;
+	}
+	
+	@Override
+	public boolean contains(int value)
+	{
+		if (values.contains(value))
+		{
+			return true;
+		}
+		return false;
+	}
+	
+	@Override
+	public int size()
+	{
+		return values.size();
+	}
+	
+	@Override
+	public boolean isEmpty()
+	{
+		return values.isEmpty();
+	}
+	
+	@Override
+	public int firstValue()
+	{
+		return nextValue(0);
+	}
+	
+	@Override
+	public int nextValue(int value)
+	{
+		int next = 0;
+		for(Integer v : values)
+		{
+			if(v > value && (next == 0 || v < next))
+			{
+				next = v;
+			}
+		}
+		return next;
+	}
+	
+	@Override
+	public Domain copy()
+	{
+		return new ListDomain(this);
+	}
+	
+	@Override
+	public Domain singleton(int value)
+	{
+		return new ListDomain(value);
+	}
+	
+	/**
+	 * Boxed values up to 127 come from the Integer cache and are not counted.
+	 */
+	@Override
+	public int sizeInBytes()
+	{
+		// Domain + ArrayList + backing array header, then a reference per value
+		return 16 + 24 + 16 + 4 * values.size();
+	}
+	
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	@Override
+	public boolean remove(int value)
+	{
+		Integer v = value;
+		
+		if(!contains(value))
+		{
+			return false;
+		}
+		
+		setModified(true);
+		values.remove(v);
+		return true;
+	}
+
+	/**
+	 * Keeps ascending values ascending, so a value removed and added back 
+	 * returns to its old position.
+	 */
+	@Override
+	public void add(int value)
+	{
+		if(contains(value))
+		{
+			return;
+		}
+		int i = values.size();
+		while(i > 0 && values.get(i-1) > value)
+		{
+			i--;
+		}
+		values.add(i, value);
+	}
+
+	//===============================================================================
+	// Iterator
+	//===============================================================================
+	
+	/**
+	 * Iterates the values in the order they were given.
+	 */
+	@Override
+	public Iterator<Integer> iterator() {
+		return values.iterator();
+	}
+}
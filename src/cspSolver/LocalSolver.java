@@ -37,6 +37,20 @@ public class LocalSolver implements Runnable{
 		sudokuGrid = sf;
 	}
 
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Makes the search give up once the deadline passes. Checked at every step, so it 
+	 * may also be moved from another thread to cancel a running solve.
+	 * @param deadline System.currentTimeMillis() value, {@link ConstraintNetwork#NO_DEADLINE} for none
+	 */
+	public void setDeadline(long deadline)
+	{
+		network.setDeadline(deadline);
+	}
+
 	//===============================================================================
 	// Accessors
 	//===============================================================================
@@ -54,6 +68,11 @@ public class LocalSolver implements Runnable{
 		return sudokuGrid;
 	}
 
+	public ConstraintNetwork getNetwork()
+	{
+		return network;
+	}
+
 	public void printSolverStats()
 	{
 		System.out.println("Time taken:" + (endTime-startTime) + " ms");
@@ -130,6 +149,14 @@ public class LocalSolver implements Runnable{
 		return assignments;
 	}
 
+	/**
+	 * @return true if the thread was interrupted or the deadline has passed
+	 */
+	private boolean isCancelled()
+	{
+		return Thread.currentThread().isInterrupted() || network.isPastDeadline();
+	}
+
 	private void success()
 	{
 		endTime = System.currentTimeMillis();
@@ -153,13 +180,18 @@ public class LocalSolver implements Runnable{
 
 	public void solve()
 	{
-		if (!Thread.currentThread().isInterrupted())
+		if (!isCancelled())
 		{
 			startTime = System.currentTimeMillis();
 			generateStartState();
 
 			while(!isSolution())
 			{
+				if(isCancelled())
+				{
+					endTime = System.currentTimeMillis();
+					return;
+				}
 				restartCounter();
 				generateSuccessor();
 				//int score = getNetworkScore();
@@ -0,0 +1,355 @@
+package cspSolver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Domain backed by an array of longs, for boards with more than 64 values.
+ * Value v is held in bit (v-1)%64 of word (v-1)/64, so a domain over 1..N
+ * costs about N/8 bytes.
+ *
+ * The static operations work on word arrays in the same layout a word at a time,
+ * so propagators can intersect, subtract and count sets of values in bulk. They
+ * never touch a variable's domain; to remove values during search use
+ * {@link Variable#removeValues(long[])} and {@link Variable#retainValues(long[])},
+ * which record every removal on the Trail.
+ */
+public class MultiWordBitDomain extends Domain{
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private long[] words;
+	private int size;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * Constructs a domain with a single value
+	 * @param numWords number of 64 bit words to allocate
+	 * @param value the sole value within the domain
+	 */
+	public MultiWordBitDomain(int numWords, int value)
+	{
+		words = new long[numWords];
+		add(value);
+	}
+
+	/**
+	 * Constructs a domain with a List<Integer> of values
+	 * @param values all possible values for the domain
+	 */
+	public MultiWordBitDomain(List<Integer> values)
+	{
+		int max = 0;
+		for(Integer value : values)
+		{
+			max = Math.max(max, value);
+		}
+		words = new long[wordCount(max)];
+		for(Integer value : values)
+		{
+			add(value);
+		}
+	}
+
+	/**
+	 * Copy Constructor. Used to keep a copy of assignments in the Trail.
+	 * @param d the domain to copy
+	 * @see Trail
+	 */
+	public MultiWordBitDomain(MultiWordBitDomain d)
+	{
+		this.words = d.words.clone();
+		this.size = d.size;
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return the backing words, value v in bit (v-1)%64 of word (v-1)/64.
+	 * The array is not copied and must not be modified.
+	 */
+	public long[] getWords()
+	{
+		return words;
+	}
+
+	/**
+	 * Builds a new list on every call; prefer {@link #firstValue()} and
+	 * {@link #nextValue(int)} on hot paths.
+	 */
+	@Override
+	public ArrayList<Integer> getValues()
+	{
+		ArrayList<Integer> values = new ArrayList<Integer>(size);
+		for(int i = firstValue(); i != 0; i = nextValue(i))
+		{
+			values.add(i);
+		}
+		return values;
+	}
+
+	@Override
+	public boolean contains(int value)
+	{
+		int w = (value - 1) >>> 6;
+		return value >= 1 && w < words.length && (words[w] & (1L << (value - 1))) != 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public int firstValue()
+	{
+		return nextValue(0);
+	}
+
+	@Override
+	public int nextValue(int value)
+	{
+		if(value < 0)
+		{
+			value = 0;
+		}
+		int w = value >>> 6;
+		if(w >= words.length)
+		{
+			return 0;
+		}
+		long rest = words[w] & (-1L << value);
+		while(rest == 0)
+		{
+			if(++w == words.length)
+			{
+				return 0;
+			}
+			rest = words[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(rest) + 1;
+	}
+
+	/**
+	 * @param other words in the same layout as {@link #getWords()}
+	 * @return the number of values held by both this domain and <tt>other</tt>
+	 */
+	public int intersectionSize(long[] other)
+	{
+		return intersectionSize(words, other);
+	}
+
+	public int intersectionSize(MultiWordBitDomain other)
+	{
+		return intersectionSize(words, other.words);
+	}
+
+	@Override
+	public Domain copy()
+	{
+		return new MultiWordBitDomain(this);
+	}
+
+	@Override
+	public Domain singleton(int value)
+	{
+		return new MultiWordBitDomain(Math.max(words.length, wordCount(value)), value);
+	}
+
+	@Override
+	public int sizeInBytes()
+	{
+		// Domain + long[] header + words
+		return 24 + 16 + 8 * words.length;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	@Override
+	public boolean remove(int value)
+	{
+		if(!contains(value))
+		{
+			return false;
+		}
+
+		setModified(true);
+		words[(value - 1) >>> 6] &= ~(1L << (value - 1));
+		size--;
+		return true;
+	}
+
+	@Override
+	public void add(int value)
+	{
+		if(value < 1 || ((value - 1) >>> 6) >= words.length)
+		{
+			throw new IllegalArgumentException("Value " + value + " does not fit in " + words.length + " words");
+		}
+		if(!contains(value))
+		{
+			words[(value - 1) >>> 6] |= 1L << (value - 1);
+			size++;
+		}
+	}
+
+	//===============================================================================
+	// Word Operations
+	//===============================================================================
+
+	/**
+	 * @param maxValue the largest value to hold
+	 * @return the number of words needed for the values 1..maxValue
+	 */
+	public static int wordCount(int maxValue)
+	{
+		return (maxValue + Long.SIZE - 1) / Long.SIZE;
+	}
+
+	/**
+	 * @param d any domain
+	 * @param w index of the word
+	 * @return the values of <tt>d</tt> in 64w+1..64w+64, in the layout of {@link #getWords()}
+	 */
+	public static long word(Domain d, int w)
+	{
+		if(d instanceof MultiWordBitDomain)
+		{
+			long[] words = ((MultiWordBitDomain) d).words;
+			return w < words.length ? words[w] : 0L;
+		}
+		if(d instanceof BitDomain)
+		{
+			return w == 0 ? ((BitDomain) d).getMask() : 0L;
+		}
+		long word = 0;
+		int last = (w + 1) << 6;
+		for(int value = d.nextValue(w << 6); value != 0 && value <= last; value = d.nextValue(value))
+		{
+			word |= 1L << (value - 1);
+		}
+		return word;
+	}
+
+	/**
+	 * Copies the values of any domain into <tt>into</tt>, dropping those that do not fit.
+	 */
+	public static void copyWords(Domain d, long[] into)
+	{
+		for(int w = 0; w < into.length; w++)
+		{
+			into[w] = word(d, w);
+		}
+	}
+
+	/**
+	 * @return the number of values held by <tt>words</tt>
+	 */
+	public static int bitCount(long[] words)
+	{
+		int count = 0;
+		for(int w = 0; w < words.length; w++)
+		{
+			count += Long.bitCount(words[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of values held by both <tt>a</tt> and <tt>b</tt>
+	 */
+	public static int intersectionSize(long[] a, long[] b)
+	{
+		int n = Math.min(a.length, b.length);
+		int count = 0;
+		for(int w = 0; w < n; w++)
+		{
+			count += Long.bitCount(a[w] & b[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * Union of <tt>a</tt> and <tt>b</tt>, written to <tt>into</tt>, which may be either of them.
+	 * All three must have the same length.
+	 * @return the number of values in the union
+	 */
+	public static int union(long[] a, long[] b, long[] into)
+	{
+		int count = 0;
+		for(int w = 0; w < into.length; w++)
+		{
+			into[w] = a[w] | b[w];
+			count += Long.bitCount(into[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * Difference. Removes every value held by <tt>other</tt> from <tt>words</tt>.
+	 * @return the number of values left in <tt>words</tt>
+	 */
+	public static int difference(long[] words, long[] other)
+	{
+		int n = Math.min(words.length, other.length);
+		int count = 0;
+		for(int w = 0; w < words.length; w++)
+		{
+			if(w < n)
+			{
+				words[w] &= ~other[w];
+			}
+			count += Long.bitCount(words[w]);
+		}
+		return count;
+	}
+
+	//===============================================================================
+	// Iterator
+	//===============================================================================
+
+	/**
+	 * Iterates the values in ascending order. The iterator works on a snapshot
+	 * of the words, so removing values while iterating is safe.
+	 */
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+
+			private long[] remaining = words.clone();
+			private int w = 0;
+
+			@Override
+			public boolean hasNext() {
+				while(w < remaining.length && remaining[w] == 0)
+				{
+					w++;
+				}
+				return w < remaining.length;
+			}
+
+			@Override
+			public Integer next() {
+				if(!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				int value = (w << 6) + Long.numberOfTrailingZeros(remaining[w]) + 1;
+				remaining[w] &= remaining[w] - 1;
+				return value;
+			}
+		};
+	}
+}
@@ -0,0 +1,198 @@
+package cspSolver;
+
+/**
+ * Naked subsets within each constraint (row, column or block): if k variables of a
+ * constraint together allow only k values, no other variable of the constraint can
+ * take those values. With k = 1 this removes the value of an assigned variable from
+ * the rest of its constraint. Fewer than k values for k variables is a failure.
+ *
+ * Subsets are enumerated by OR-ing the domains as bitmasks, skipping any
+ * subset whose union already has more than k values. Every subset found is
+ * used, not just the first. Only constraints modified since they were last
+ * looked at are searched, and all working arrays are allocated up front.
+ *
+ * Domains are copied into word arrays, so boards of any size are searched with
+ * the word operations of {@link MultiWordBitDomain}, and the values of a subset
+ * are removed from the other variables in bulk with {@link Variable#removeValues(long[])}.
+ */
+public class NakedSubsetPropagator extends ConstraintPropagator {
+
+	/**
+	 * Largest subset size that can be searched for.
+	 */
+	public static final int MAX_SUBSET_SIZE = 4;
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int maxSubsetSize;
+
+	// the variables of the constraint being searched, their domains and domain sizes
+	private final Variable[] cells;
+	private final long[][] masks;
+	private final int[] sizes;
+	// unions[d] holds the values allowed by the first d cells chosen
+	private final long[][] unions;
+	private final int[] chosen = new int[MAX_SUBSET_SIZE];
+	private int numCells;
+	private boolean failed;
+
+	private long numSubsets;
+	private long numRemovals;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param network network whose constraints are searched
+	 * @param maxSubsetSize largest subset size to look for, 1..{@link #MAX_SUBSET_SIZE}
+	 */
+	public NakedSubsetPropagator(ConstraintNetwork network, int maxSubsetSize)
+	{
+		super(network);
+		if(maxSubsetSize < 1 || maxSubsetSize > MAX_SUBSET_SIZE)
+		{
+			throw new IllegalArgumentException("Subset size must be in 1.." + MAX_SUBSET_SIZE + ", got " + maxSubsetSize);
+		}
+		this.maxSubsetSize = maxSubsetSize;
+
+		int maxArity = network.getMaxArity();
+		int numWords = MultiWordBitDomain.wordCount(network.getMaxValue());
+		cells = new Variable[maxArity];
+		masks = new long[maxArity][numWords];
+		sizes = new int[maxArity];
+		unions = new long[MAX_SUBSET_SIZE + 1][numWords];
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return number of naked subsets that removed at least one value
+	 */
+	public long getNumSubsets()
+	{
+		return numSubsets;
+	}
+
+	/**
+	 * @return number of values removed from domains so far
+	 */
+	public long getNumRemovals()
+	{
+		return numRemovals;
+	}
+
+	//===============================================================================
+	// Propagation
+	//===============================================================================
+
+	@Override
+	public boolean propagate(int cId)
+	{
+		return propagate(network.getConstraint(cId));
+	}
+
+	/**
+	 * Applies every naked subset of size up to the maximum in one constraint.
+	 * @param c constraint to search
+	 * @return false if a domain is wiped out or k variables share fewer than k values, true otherwise
+	 */
+	public boolean propagate(Constraint c)
+	{
+		numCells = c.size();
+		for(int i = 0; i < numCells; i++)
+		{
+			cells[i] = c.vars.get(i);
+			sizes[i] = cells[i].size();
+			if(sizes[i] == 0)
+			{
+				return false;
+			}
+			MultiWordBitDomain.copyWords(cells[i].getDomain(), masks[i]);
+		}
+
+		failed = false;
+		for(int k = 1; k <= maxSubsetSize && k < numCells && !failed; k++)
+		{
+			search(k, 0, 0);
+		}
+		return !failed;
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Chooses the remaining cells of a subset of size k in increasing position order.
+	 * @param k size of the subset
+	 * @param depth number of cells chosen so far
+	 * @param start first position that may be chosen next
+	 */
+	private void search(int k, int depth, int start)
+	{
+		if(depth == k)
+		{
+			apply(k, unions[k]);
+			return;
+		}
+		for(int i = start; i <= numCells - (k - depth) && !failed; i++)
+		{
+			int size = sizes[i];
+			// an assigned cell is only a subset by itself
+			if(size > k || (size == 1 && k > 1))
+			{
+				continue;
+			}
+			if(MultiWordBitDomain.union(unions[depth], masks[i], unions[depth + 1]) > k)
+			{
+				continue;
+			}
+			chosen[depth] = i;
+			search(k, depth + 1, i + 1);
+		}
+	}
+
+	/**
+	 * Removes the values of a naked subset from every other cell of the constraint.
+	 */
+	private void apply(int k, long[] union)
+	{
+		if(MultiWordBitDomain.bitCount(union) < k)
+		{
+			failed = true;
+			return;
+		}
+
+		boolean removed = false;
+		int next = 0;
+		for(int i = 0; i < numCells; i++)
+		{
+			if(next < k && chosen[next] == i)
+			{
+				next++;
+				continue;
+			}
+			if(MultiWordBitDomain.intersectionSize(masks[i], union) == 0)
+			{
+				continue;
+			}
+			numRemovals += cells[i].removeValues(union);
+			sizes[i] = MultiWordBitDomain.difference(masks[i], union);
+			removed = true;
+			if(sizes[i] == 0)
+			{
+				failed = true;
+				return;
+			}
+		}
+		if(removed)
+		{
+			numSubsets++;
+		}
+	}
+}
@@ -0,0 +1,397 @@
+package cspSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sudoku.SudokuFile;
+
+/**
+ * Backtracking search spread over a fork-join pool. The search runs as in
+ * {@link BTSolver}, but near the root every value of the chosen variable becomes a
+ * task instead of a loop iteration. Forked tasks sit in the worker's deque, where idle
+ * workers steal them. Past the split depth a worker still splits its current node
+ * while it has few tasks queued beyond what idle workers could take, see
+ * {@link #SURPLUS_THRESHOLD}, so work keeps flowing to idle workers when some
+ * subtrees turn out much larger than others.
+ *
+ * Each task clones the network of the node it starts from, with its current domains
+ * (see {@link BTSolver#BTSolver(BTSolver)}), so tasks share no mutable state. The first
+ * task to find a solution publishes it, and every other task stops at its next node.
+ *
+ * With a solution limit above 1 the tasks count solutions into a shared counter instead,
+ * and stop once it reaches the limit, see {@link #setSolutionLimit(long)}.
+ */
+public class ParallelBTSolver implements Runnable{
+
+	/**
+	 * Past the split depth, a node is split while the worker has at most this many
+	 * more tasks queued than there are idle workers. This is the threshold suggested by
+	 * {@link ForkJoinTask#getSurplusQueuedTaskCount()}: a few queued tasks keep thieves
+	 * busy, and splitting beyond that only adds the cost of cloning networks.
+	 */
+	public static final int SURPLUS_THRESHOLD = 3;
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final SudokuFile sudokuGrid;
+	private final Domain.Representation representation;
+
+	private BTSolver.VariableSelectionHeuristic varHeuristics;
+	private BTSolver.ValueSelectionHeuristic valHeuristics;
+	private BTSolver.ConsistencyCheck cChecks;
+	private BTSolver.NakedCheck nCheck = BTSolver.NakedCheck.None;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int splitDepth = 3;
+	private long solutionLimit = 1;
+
+	private final AtomicBoolean done = new AtomicBoolean();
+	private final AtomicReference<SudokuFile> solution = new AtomicReference<SudokuFile>();
+	private final AtomicInteger numAssignments = new AtomicInteger();
+	private final AtomicInteger numBacktracks = new AtomicInteger();
+	private final AtomicInteger numTasks = new AtomicInteger();
+	private final AtomicLong numSolutions = new AtomicLong();
+	private long startTime;
+	private long endTime;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	public ParallelBTSolver(SudokuFile sf)
+	{
+		this(sf, Domain.defaultRepresentation(sf.getN()));
+	}
+
+	/**
+	 * @param sf puzzle to solve
+	 * @param representation how the domains of the networks' variables are stored
+	 */
+	public ParallelBTSolver(SudokuFile sf, Domain.Representation representation)
+	{
+		this.sudokuGrid = sf;
+		this.representation = representation;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	public void setVariableSelectionHeuristic(BTSolver.VariableSelectionHeuristic vsh)
+	{
+		this.varHeuristics = vsh;
+	}
+
+	public void setValueSelectionHeuristic(BTSolver.ValueSelectionHeuristic vsh)
+	{
+		this.valHeuristics = vsh;
+	}
+
+	public void setConsistencyChecks(BTSolver.ConsistencyCheck cc)
+	{
+		this.cChecks = cc;
+	}
+
+	public void setNakedConsistency(BTSolver.NakedCheck nck)
+	{
+		this.nCheck = nck;
+	}
+
+	/**
+	 * @param parallelism number of worker threads, the number of processors by default
+	 */
+	public void setParallelism(int parallelism)
+	{
+		if(parallelism < 1)
+		{
+			throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param depth number of levels below the root at which every node is split into tasks, 3 by default
+	 */
+	public void setSplitDepth(int depth)
+	{
+		if(depth < 0)
+		{
+			throw new IllegalArgumentException("Split depth must not be negative, got " + depth);
+		}
+		this.splitDepth = depth;
+	}
+
+	/**
+	 * Counting mode, see {@link BTSolver#setSolutionLimit(long)}. The count is shared by 
+	 * every task, so the whole search stops as soon as the tasks together reach the limit.
+	 * @param limit number of solutions after which to stop, 1 (the default) to stop at the first
+	 */
+	public void setSolutionLimit(long limit)
+	{
+		if(limit < 1)
+		{
+			throw new IllegalArgumentException("Solution limit must be at least 1, got " + limit);
+		}
+		this.solutionLimit = limit;
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return true if a solution has been found, false otherwise.
+	 */
+	public boolean hasSolution()
+	{
+		return solution.get() != null;
+	}
+
+	/**
+	 * @return solution if a solution has been found, otherwise returns the unsolved puzzle.
+	 */
+	public SudokuFile getSolution()
+	{
+		SudokuFile sf = solution.get();
+		return sf == null ? sudokuGrid : sf;
+	}
+
+	public void printSolverStats()
+	{
+		System.out.println("Time taken:" + (endTime-startTime) + " ms");
+		System.out.println("Number of assignments: " + numAssignments.get());
+		System.out.println("Number of backtracks: " + numBacktracks.get());
+		if(solutionLimit > 1)
+		{
+			System.out.println("Number of solutions: " + getNumSolutions() + " (limit " + solutionLimit + ")");
+		}
+		System.out.println("Subtree tasks: " + numTasks.get() + " on " + parallelism + " threads");
+	}
+
+	public long getTimeTaken()
+	{
+		return endTime-startTime;
+	}
+
+	/**
+	 * @return assignments made by all tasks together
+	 */
+	public int getNumAssignments()
+	{
+		return numAssignments.get();
+	}
+
+	/**
+	 * @return backtracks made by all tasks together
+	 */
+	public int getNumBacktracks()
+	{
+		return numBacktracks.get();
+	}
+
+	/**
+	 * @return number of solutions found by all tasks together, at most the solution limit
+	 */
+	public long getNumSolutions()
+	{
+		return Math.min(numSolutions.get(), solutionLimit);
+	}
+
+	/**
+	 * @return number of subtree tasks created
+	 */
+	public int getNumTasks()
+	{
+		return numTasks.get();
+	}
+
+	/**
+	 * @return true once the solution limit was reached or the search was interrupted
+	 */
+	boolean isDone()
+	{
+		return done.get();
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Called by a searching solver at every node.
+	 * @param level depth of the node
+	 * @return true if the node's values should become tasks
+	 */
+	boolean shouldSplit(int level)
+	{
+		return level < splitDepth || ForkJoinTask.getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD;
+	}
+
+	/**
+	 * Turns every value of v into a task and waits for all of them. The parent must not
+	 * change until they are done, since each task copies its state when it starts.
+	 * @param parent solver at the node being split
+	 * @param v variable chosen at the node
+	 * @param values values of v in the order they would be tried
+	 * @param level depth of the node
+	 */
+	void split(BTSolver parent, Variable v, int[] values, int numValues, int level)
+	{
+		// every task clones the parent's network, so build its indexes before they share it
+		parent.getNetwork().buildIndex();
+		List<SubtreeTask> tasks = new ArrayList<SubtreeTask>(numValues);
+		for(int i = 0; i < numValues; i++)
+		{
+			tasks.add(new SubtreeTask(parent, v.getId(), values[i], level + 1));
+		}
+		numTasks.addAndGet(numValues);
+		ForkJoinTask.invokeAll(tasks);
+	}
+
+	/**
+	 * Called by a searching solver for every solution it finds.
+	 * @return true if the solution limit has been reached
+	 */
+	boolean countSolution()
+	{
+		if(numSolutions.incrementAndGet() >= solutionLimit)
+		{
+			done.set(true);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Waits for every task to stop, so that no task still writes to the root solver
+	 * when its results are collected. Tasks stop at their next node once done is set.
+	 * Keeps waiting when interrupted, and restores the interrupt afterwards.
+	 */
+	private static void awaitTermination(ForkJoinPool pool)
+	{
+		boolean interrupted = Thread.interrupted();
+		while(true)
+		{
+			try {
+				if(pool.awaitTermination(1, TimeUnit.SECONDS))
+				{
+					break;
+				}
+			}catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void collect(BTSolver solver)
+	{
+		numAssignments.addAndGet(solver.getNumAssignments());
+		numBacktracks.addAndGet(solver.getNumBacktracks());
+		if(solver.hasSolution())
+		{
+			solution.compareAndSet(null, solver.getSolution());
+		}
+	}
+
+	/**
+	 * Searches the subtree below one value of a split node with its own copy of the network.
+	 */
+	private class SubtreeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BTSolver parent;
+		private final int variableId;
+		private final int value;
+		private final int level;
+
+		SubtreeTask(BTSolver parent, int variableId, int value, int level)
+		{
+			this.parent = parent;
+			this.variableId = variableId;
+			this.value = value;
+			this.level = level;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(done.get())
+			{
+				return;
+			}
+			BTSolver solver = new BTSolver(parent);
+			solver.solveSubtree(variableId, value, level);
+			collect(solver);
+		}
+	}
+
+	//===============================================================================
+	// Solver
+	//===============================================================================
+
+	/**
+	 * Method to start the solver. Interrupting the calling thread stops every task.
+	 */
+	public void solve()
+	{
+		done.set(false);
+		solution.set(null);
+		numAssignments.set(0);
+		numBacktracks.set(0);
+		numTasks.set(0);
+		numSolutions.set(0);
+		startTime = System.currentTimeMillis();
+
+		final BTSolver root = new BTSolver(sudokuGrid, representation);
+		root.setVariableSelectionHeuristic(varHeuristics);
+		root.setValueSelectionHeuristic(valHeuristics);
+		root.setConsistencyChecks(cChecks);
+		root.setNakedConsistency(nCheck);
+		root.setSolutionLimit(solutionLimit);
+		root.setParallel(this);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					root.solve();
+				}
+			}).get();
+		}catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}finally
+		{
+			done.set(true);
+			pool.shutdown();
+			awaitTermination(pool);
+		}
+		collect(root);
+		endTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public void run() {
+		solve();
+	}
+}
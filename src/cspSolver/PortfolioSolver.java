@@ -0,0 +1,243 @@
+package cspSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import sudoku.SudokuFile;
+import cspSolver.BTSolver.ConsistencyCheck;
+import cspSolver.BTSolver.NakedCheck;
+import cspSolver.BTSolver.ValueSelectionHeuristic;
+import cspSolver.BTSolver.VariableSelectionHeuristic;
+
+/**
+ * Races differently configured {@link BTSolver}s on the same puzzle, one thread
+ * each, and keeps the first solution. The losers are interrupted as soon as a
+ * winner is known. Which heuristics work best changes a lot from puzzle to puzzle,
+ * so the race is as slow as the best configuration on each puzzle, not the worst.
+ * Configurations whose checks cannot handle the puzzle, e.g. Fish on boards wider
+ * than 64, are left out of the race.
+ */
+public class PortfolioSolver implements Runnable{
+
+	/**
+	 * One way to set up a {@link BTSolver}.
+	 */
+	public static class Configuration {
+
+		private final VariableSelectionHeuristic varHeuristics;
+		private final ValueSelectionHeuristic valHeuristics;
+		private final ConsistencyCheck cChecks;
+		private final NakedCheck nCheck;
+
+		public Configuration(VariableSelectionHeuristic vsh, ValueSelectionHeuristic valsh, ConsistencyCheck cc, NakedCheck nck)
+		{
+			this.varHeuristics = vsh;
+			this.valHeuristics = valsh;
+			this.cChecks = cc;
+			this.nCheck = nck;
+		}
+
+		/**
+		 * @return a new solver for the puzzle with this configuration
+		 */
+		public BTSolver createSolver(SudokuFile sf)
+		{
+			BTSolver solver = new BTSolver(sf);
+			solver.setVariableSelectionHeuristic(varHeuristics);
+			solver.setValueSelectionHeuristic(valHeuristics);
+			solver.setConsistencyChecks(cChecks);
+			solver.setNakedConsistency(nCheck);
+			return solver;
+		}
+
+		public String toString()
+		{
+			return varHeuristics + ", " + valHeuristics + ", " + cChecks + ", " + nCheck;
+		}
+	}
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final SudokuFile sudokuGrid;
+	private final List<Configuration> configurations = new ArrayList<Configuration>();
+
+	private BTSolver winner;
+	private Configuration winningConfiguration;
+	private long startTime;
+	private long endTime;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	public PortfolioSolver(SudokuFile sf)
+	{
+		this.sudokuGrid = sf;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Adds a configuration to the race. Without any, {@link #defaultConfigurations()} is used.
+	 */
+	public void addConfiguration(VariableSelectionHeuristic vsh, ValueSelectionHeuristic valsh, ConsistencyCheck cc, NakedCheck nck)
+	{
+		configurations.add(new Configuration(vsh, valsh, cc, nck));
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return configurations that do well on different parts of the example puzzles
+	 */
+	public static List<Configuration> defaultConfigurations()
+	{
+		List<Configuration> defaults = new ArrayList<Configuration>();
+		defaults.add(new Configuration(VariableSelectionHeuristic.DomainOverWeightedDegree, ValueSelectionHeuristic.None,
+				ConsistencyCheck.GeneralizedArcConsistency, NakedCheck.HiddenSingles));
+		defaults.add(new Configuration(VariableSelectionHeuristic.DomainOverWeightedDegree, ValueSelectionHeuristic.LeastConstrainingValue,
+				ConsistencyCheck.IncrementalForwardChecking, NakedCheck.None));
+		defaults.add(new Configuration(VariableSelectionHeuristic.MinimumRemainingValueThenDegree, ValueSelectionHeuristic.None,
+				ConsistencyCheck.IncrementalArcConsistency, NakedCheck.HiddenPairs));
+		defaults.add(new Configuration(VariableSelectionHeuristic.IndexedMinimumRemainingValue, ValueSelectionHeuristic.LeastConstrainingValue,
+				ConsistencyCheck.Fish, NakedCheck.IntersectionReduction));
+		return defaults;
+	}
+
+	/**
+	 * @return true if a solution has been found, false otherwise.
+	 */
+	public boolean hasSolution()
+	{
+		return winner != null;
+	}
+
+	/**
+	 * @return solution if a solution has been found, otherwise returns the unsolved puzzle.
+	 */
+	public SudokuFile getSolution()
+	{
+		return winner == null ? sudokuGrid : winner.getSolution();
+	}
+
+	/**
+	 * @return configuration of the solver that found the solution, null if none did
+	 */
+	public Configuration getWinningConfiguration()
+	{
+		return winningConfiguration;
+	}
+
+	public void printSolverStats()
+	{
+		System.out.println("Time taken:" + (endTime-startTime) + " ms");
+		System.out.println("Winning configuration: " + (winningConfiguration == null ? "none" : winningConfiguration.toString()));
+		System.out.println("Number of assignments: " + getNumAssignments());
+		System.out.println("Number of backtracks: " + getNumBacktracks());
+	}
+
+	public long getTimeTaken()
+	{
+		return endTime-startTime;
+	}
+
+	/**
+	 * @return assignments made by the winning solver
+	 */
+	public int getNumAssignments()
+	{
+		return winner == null ? 0 : winner.getNumAssignments();
+	}
+
+	/**
+	 * @return backtracks made by the winning solver
+	 */
+	public int getNumBacktracks()
+	{
+		return winner == null ? 0 : winner.getNumBacktracks();
+	}
+
+	//===============================================================================
+	// Solver
+	//===============================================================================
+
+	/**
+	 * Method to start the solver. Interrupting the calling thread stops every solver.
+	 * @throws IllegalArgumentException if none of the configurations supports the puzzle
+	 */
+	public void solve()
+	{
+		winner = null;
+		winningConfiguration = null;
+		startTime = System.currentTimeMillis();
+
+		final List<Configuration> race = new ArrayList<Configuration>();
+		final List<BTSolver> solvers = new ArrayList<BTSolver>();
+		IllegalArgumentException unsupported = null;
+		for(Configuration configuration : configurations.isEmpty() ? defaultConfigurations() : configurations)
+		{
+			try {
+				solvers.add(configuration.createSolver(sudokuGrid));
+				race.add(configuration);
+			}catch (IllegalArgumentException e)
+			{
+				// the board is too large for one of its checks, race the others
+				unsupported = e;
+			}
+		}
+		if(race.isEmpty())
+		{
+			throw new IllegalArgumentException("None of the configurations supports this puzzle", unsupported);
+		}
+
+		List<Callable<Integer>> entrants = new ArrayList<Callable<Integer>>(race.size());
+		for(int i = 0; i < race.size(); i++)
+		{
+			final int index = i;
+			entrants.add(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					solvers.get(index).solve();
+					if(!solvers.get(index).hasSolution())
+					{
+						throw new Exception("No solution found by " + race.get(index));
+					}
+					return index;
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(race.size());
+		try {
+			// returns the first entrant to finish with a solution and interrupts the rest
+			int first = executor.invokeAny(entrants);
+			winner = solvers.get(first);
+			winningConfiguration = race.get(first);
+		}catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}catch (ExecutionException e)
+		{
+			// every solver finished without a solution
+		}finally
+		{
+			executor.shutdownNow();
+		}
+		endTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public void run() {
+		solve();
+	}
+}
@@ -0,0 +1,109 @@
+package cspSolver;
+
+/**
+ * FIFO queue of ids in 0..capacity-1 backed by a ring buffer. An id is held
+ * at most once: a bitset remembers which ids are queued, and offering an id
+ * that is already queued does nothing. Used by the propagators to queue
+ * variables and constraints without allocating.
+ */
+public class RingQueue {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int[] ring;
+	private final long[] queued;
+	private int head;
+	private int size;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param capacity number of distinct ids, ids run from 0 to capacity-1
+	 */
+	public RingQueue(int capacity)
+	{
+		ring = new int[capacity];
+		queued = new long[(capacity + Long.SIZE - 1) / Long.SIZE];
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param id an id in 0..capacity-1
+	 * @return true if <tt>id</tt> is waiting in the queue
+	 */
+	public boolean contains(int id)
+	{
+		return (queued[id >>> 6] & (1L << id)) != 0;
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	/**
+	 * Adds <tt>id</tt> to the back of the queue unless it is already queued.
+	 * @param id an id in 0..capacity-1
+	 * @return true if the id was added
+	 */
+	public boolean offer(int id)
+	{
+		if(contains(id))
+		{
+			return false;
+		}
+		queued[id >>> 6] |= 1L << id;
+		int tail = head + size;
+		ring[tail < ring.length ? tail : tail - ring.length] = id;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes the id at the front of the queue.
+	 * @return the id, -1 if the queue is empty
+	 */
+	public int poll()
+	{
+		if(size == 0)
+		{
+			return -1;
+		}
+		int id = ring[head];
+		queued[id >>> 6] &= ~(1L << id);
+		if(++head == ring.length)
+		{
+			head = 0;
+		}
+		size--;
+		return id;
+	}
+
+	/**
+	 * Empties the queue. Cost is proportional to the number of queued ids.
+	 */
+	public void clear()
+	{
+		while(size > 0)
+		{
+			poll();
+		}
+		head = 0;
+	}
+}
@@ -1,83 +1,228 @@
 package cspSolver;
 
+import java.util.Arrays;
 import java.util.EmptyStackException;
 import java.util.Stack;
 
 /**
- * Represents the trail of changes made. This allows backtracking to occur. 
- * Trail follows the singleton design pattern. 
+ * Represents the trail of changes made. This allows backtracking to occur.
+ * Each ConstraintNetwork owns its own Trail, so solvers working on different
+ * networks do not share undo history and can run on different threads.
+ *
+ * The trail runs in one of two modes:
+ * 	DomainCopy	every change pushes the variable with a deep copy of its old domain.
+ * 	Delta		every removed value is recorded as a (variable id, value) pair in two
+ * 				int arrays, and undo puts the values back. Undo cost scales with the
+ * 				number of removals, not with the size of the domains.
  */
 public class Trail {
-	
+
+	public enum Mode { DomainCopy, Delta };
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// approximate sizes, in bytes, with compressed references
+	private static final int BYTES_PER_COPY_ENTRY = 24; // Object[2]
+	private static final int BYTES_PER_DELTA_ENTRY = 8; // int id + int value
+
 	//===============================================================================
 	// Properties
 	//===============================================================================
-	
-	private static Stack<Object[]> trail = new Stack<Object[]>();
-	private static final Trail TRAIL = new Trail();
-	private static Stack<Integer> breadcrumbs = new Stack<Integer>();
-	private Trail()
-	{}
-	
+
+	private final ConstraintNetwork network;
+	private Mode mode = Mode.DomainCopy;
+
+	// DomainCopy mode
+	private Stack<Object[]> trail = new Stack<Object[]>();
+
+	// Delta mode
+	private int[] removedIds = new int[INITIAL_CAPACITY];
+	private int[] removedValues = new int[INITIAL_CAPACITY];
+	private int numRemoved;
+
+	private int[] breadcrumbs = new int[INITIAL_CAPACITY];
+	private int numBreadcrumbs;
+
+	private long bytes;
+	private long peakBytes;
+
 	/**
-	 * returns the trail.
-	 * @return
+	 * In Delta mode the trail stores variable ids; the network is used to
+	 * find the variables again on undo.
+	 * @param network network whose variables are recorded on this trail
+	 * @see ConstraintNetwork#getTrail()
 	 */
-	public static Trail getTrail()
+	Trail(ConstraintNetwork network)
 	{
-		return TRAIL;
+		this.network = network;
 	}
-	
-	public static void clearTrail()
+
+	/**
+	 * Drops every change and marker without undoing them.
+	 */
+	public void clear()
 	{
 		trail.clear();
+		numRemoved = 0;
+		numBreadcrumbs = 0;
+		bytes = 0;
 	}
 	//===============================================================================
 	// Accessors
 	//===============================================================================
-	
+
 	public int size()
 	{
-		return trail.size();
+		return mode == Mode.Delta ? numRemoved : trail.size();
+	}
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * @return true if changes are recorded as removed values rather than domain copies
+	 */
+	public boolean isDelta()
+	{
+		return mode == Mode.Delta;
+	}
+
+	/**
+	 * @return approximate number of bytes held by the trail entries right now
+	 */
+	public long getBytes()
+	{
+		return bytes;
 	}
-	
+
+	/**
+	 * @return largest value {@link #getBytes()} reached since the last call to {@link #resetPeakBytes()}
+	 */
+	public long getPeakBytes()
+	{
+		return peakBytes;
+	}
+
 	//===============================================================================
 	// Modifiers
 	//===============================================================================
-	
+
+	/**
+	 * Switches between domain copies and removed values. Only allowed while the trail is empty.
+	 * @param mode how changes are recorded
+	 */
+	public void setMode(Mode mode)
+	{
+		if(size() != 0)
+		{
+			throw new IllegalStateException("Trail mode can only change while the trail is empty");
+		}
+		this.mode = mode;
+	}
+
+	public void resetPeakBytes()
+	{
+		peakBytes = bytes;
+	}
+
 	/**
-	 * places a marker at the current point in the trail. Each time undo is called, the 
-	 * latest marker is popped and the trail 
+	 * places a marker at the current point in the trail. Each time undo is called, the
+	 * latest marker is popped and the trail
 	 */
 	public void placeBreadCrumb()
 	{
-		breadcrumbs.add(trail.size());
+		if(numBreadcrumbs == breadcrumbs.length)
+		{
+			breadcrumbs = Arrays.copyOf(breadcrumbs, numBreadcrumbs * 2);
+		}
+		breadcrumbs[numBreadcrumbs++] = size();
 	}
+
 	/**
 	 * Adds a deep copy of a variable and its domain onto the trail.
+	 * Does nothing in Delta mode.
 	 * @param v Variable to copy onto the trail
 	 */
 	public void push(Variable v)
 	{
-		Object[] vPair = { v, new Domain(v.getDomain())};
+		if(mode == Mode.Delta)
+		{
+			return;
+		}
+		Domain copy = v.getDomain().copy();
+		Object[] vPair = { v, copy};
 		trail.push(vPair);
+		addBytes(BYTES_PER_COPY_ENTRY + copy.sizeInBytes());
+	}
+
+	/**
+	 * Records that <tt>value</tt> is about to be removed from the domain of <tt>v</tt>.
+	 * In DomainCopy mode this pushes a copy of the domain, see {@link #push(Variable)}.
+	 * @param v Variable losing a value
+	 * @param value the value being removed
+	 */
+	public void pushRemoval(Variable v, int value)
+	{
+		if(mode == Mode.DomainCopy)
+		{
+			push(v);
+			return;
+		}
+		if(numRemoved == removedIds.length)
+		{
+			removedIds = Arrays.copyOf(removedIds, numRemoved * 2);
+			removedValues = Arrays.copyOf(removedValues, numRemoved * 2);
+		}
+		removedIds[numRemoved] = v.getId();
+		removedValues[numRemoved] = value;
+		numRemoved++;
+		addBytes(BYTES_PER_DELTA_ENTRY);
 	}
-	
+
 	/**
-	 * Pops changes pushed onto the trail until it reaches the latest marker. 
-	 * Also pops the latest marker. 
-	 * @param targetSize target position on the trail to backtrack to
-	 * @throws EmptyStackException if trail is empty
+	 * Pops changes pushed onto the trail until it reaches the latest marker.
+	 * Also pops the latest marker.
+	 * @throws EmptyStackException if no marker has been placed
 	 */
-	public void undo() throws EmptyStackException 
+	public void undo() throws EmptyStackException
 	{
-		int targetSize = breadcrumbs.pop();
+		if(numBreadcrumbs == 0)
+		{
+			throw new EmptyStackException();
+		}
+		int targetSize = breadcrumbs[--numBreadcrumbs];
+		if(mode == Mode.Delta)
+		{
+			while (numRemoved > targetSize)
+			{
+				numRemoved--;
+				network.getVariable(removedIds[numRemoved]).restoreValue(removedValues[numRemoved]);
+			}
+			bytes = (long) numRemoved * BYTES_PER_DELTA_ENTRY;
+			return;
+		}
 		for (int size = trail.size(); size > targetSize; size--)
 		{
 			Object[] vPair = trail.pop();
 			Variable v = (Variable) vPair[0];
-			v.setDomain((Domain) vPair[1]);
+			Domain d = (Domain) vPair[1];
+			bytes -= BYTES_PER_COPY_ENTRY + d.sizeInBytes();
+			v.setDomain(d);
 		}
 	}
-}
 
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	private void addBytes(long entryBytes)
+	{
+		bytes += entryBytes;
+		if(bytes > peakBytes)
+		{
+			peakBytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package cspSolver;
+
+/**
+ * Counts, for every constraint and value, how many variables of the constraint
+ * still have the value in their domain. The network keeps the counts up to date
+ * as values are removed and restored, so they follow the Trail on undo.
+ *
+ * Whenever a count drops to one or zero the (constraint, value) pair is queued,
+ * which lets hidden singles be found without rescanning the constraints.
+ * @see ConstraintNetwork#getValueSupport()
+ */
+public class ValueSupport implements DomainListener {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final ConstraintNetwork network;
+	private final int maxValue;
+
+	// counts[cId * (maxValue + 1) + value]
+	private final int[] counts;
+	private final RingQueue lowSupport;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * Counts the current domains. Every pair with a count of one or zero starts out queued.
+	 * @param network network to count
+	 */
+	ValueSupport(ConstraintNetwork network)
+	{
+		this.network = network;
+		this.maxValue = network.getMaxValue();
+
+		int numConstraints = network.getConstraints().size();
+		counts = new int[numConstraints * (maxValue + 1)];
+		lowSupport = new RingQueue(counts.length);
+		for(Constraint c : network.getConstraints())
+		{
+			for(Variable v : c.vars)
+			{
+				Domain d = v.getDomain();
+				for(int value = d.firstValue(); value != 0; value = d.nextValue(value))
+				{
+					counts[key(c.getId(), value)]++;
+				}
+			}
+			for(int value = 1; value <= maxValue; value++)
+			{
+				if(counts[key(c.getId(), value)] <= 1)
+				{
+					lowSupport.offer(key(c.getId(), value));
+				}
+			}
+		}
+	}
+
+	//===============================================================================
+	// Accessors
+	//===============================================================================
+
+	/**
+	 * @return the largest value of the network, see {@link ConstraintNetwork#getMaxValue()}
+	 */
+	public int getMaxValue()
+	{
+		return maxValue;
+	}
+
+	/**
+	 * @param cId id of a constraint
+	 * @param value a value in 1..{@link #getMaxValue()}
+	 * @return number of variables of the constraint with <tt>value</tt> in their domain
+	 */
+	public int getCount(int cId, int value)
+	{
+		return counts[key(cId, value)];
+	}
+
+	/**
+	 * Takes the next pair whose count dropped to one or zero off the queue. The count
+	 * may have gone up again since, so check {@link #getCount(int, int)}.
+	 * Decode the result with {@link #constraintOf(int)} and {@link #valueOf(int)}.
+	 * @return the pair, -1 if the queue is empty
+	 */
+	public int pollLowSupport()
+	{
+		return lowSupport.poll();
+	}
+
+	/**
+	 * Empties the queue, e.g. after a failed propagation that is about to be undone.
+	 */
+	public void clearLowSupport()
+	{
+		lowSupport.clear();
+	}
+
+	public int constraintOf(int pair)
+	{
+		return pair / (maxValue + 1);
+	}
+
+	public int valueOf(int pair)
+	{
+		return pair % (maxValue + 1);
+	}
+
+	//===============================================================================
+	// Modifiers
+	//===============================================================================
+
+	@Override
+	public void valueRemoved(Variable v, int value)
+	{
+		for(int cId : network.getConstraintIds(v))
+		{
+			int key = key(cId, value);
+			if(--counts[key] <= 1)
+			{
+				lowSupport.offer(key);
+			}
+		}
+	}
+
+	@Override
+	public void valueRestored(Variable v, int value)
+	{
+		for(int cId : network.getConstraintIds(v))
+		{
+			counts[key(cId, value)]++;
+		}
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	private int key(int cId, int value)
+	{
+		return cId * (maxValue + 1) + value;
+	}
+}
@@ -9,13 +9,13 @@ public class Variable implements Iterable<Integer>
 	// Properties
 	//===============================================================================
 	
-	private static int namingCounter = 1;
 	private Domain domain;	
 	private int row, col, block;
 	private boolean modified;
 	private boolean unchangeable;
-	private String name;
-	private static Trail trail = Trail.getTrail();
+	private int id = -1;
+	private ConstraintNetwork network;
+	private Trail trail;
 	
 	private int oldSize;
 	
@@ -25,7 +25,12 @@ public class Variable implements Iterable<Integer>
 	
 	public Variable(List<Integer> possible_Values, int row, int col, int block)
 	{	
-		this.domain = new Domain(possible_Values);
+		this(new ListDomain(possible_Values), row, col, block);
+	}
+	
+	public Variable(Domain domain, int row, int col, int block)
+	{
+		this.domain = domain;
 		if (size() == 1)
 		{
 			modified = true;
@@ -34,7 +39,6 @@ public class Variable implements Iterable<Integer>
 		this.row = row;
 		this.col = col;
 		this.block = block;
-		this.name = "v" + namingCounter++;
 		this.oldSize = size();
 	}
 	
@@ -45,7 +49,29 @@ public class Variable implements Iterable<Integer>
 		this.col = v.col;
 		this.block = v.block;
 		this.modified = v.modified;
-		this.name = v.name;
+		this.id = v.id;
+		this.network = v.network;
+		this.trail = v.trail;
+	}
+
+	/**
+	 * Copies a variable into another network, see {@link ConstraintNetwork#ConstraintNetwork(ConstraintNetwork)}.
+	 * The copy gets a copy of the current domain, keeps the id, and starts out modified.
+	 * @param v variable to copy
+	 * @param network network the copy belongs to
+	 */
+	Variable(Variable v, ConstraintNetwork network)
+	{
+		this.domain = v.domain.copy();
+		this.row = v.row;
+		this.col = v.col;
+		this.block = v.block;
+		this.modified = true;
+		this.unchangeable = v.unchangeable;
+		this.oldSize = v.oldSize;
+		this.id = v.id;
+		this.network = network;
+		this.trail = network.getTrail();
 	}
 	
 	//===============================================================================
@@ -72,9 +98,21 @@ public class Variable implements Iterable<Integer>
 		return modified;
 	}
 	
+	/**
+	 * Setting the flag also queues this variable and its constraints on the network,
+	 * see {@link ConstraintNetwork#pollModifiedVariable()}.
+	 * @param modified value to set the modified flag
+	 */
 	public void setModified(boolean modified)
 	{
-		this.modified = modified;
+		if(modified)
+		{
+			markModified();
+		}
+		else
+		{
+			this.modified = false;
+		}
 		this.domain.setModified(modified);
 	}
 	
@@ -106,7 +144,7 @@ public class Variable implements Iterable<Integer>
 		}
 		else
 		{
-			return domain.getValues().get(0);
+			return domain.firstValue();
 		}
 	}
 	
@@ -125,36 +163,81 @@ public class Variable implements Iterable<Integer>
 		return domain;
 	}
 	
+	/**
+	 * @return "v" followed by the 1-based position of the variable in its network
+	 */
 	public String getName()
 	{
-		return name;
+		return "v" + (id + 1);
+	}
+	
+	/**
+	 * @return position of this variable in its ConstraintNetwork, -1 if it has not been added to one.
+	 */
+	public int getId()
+	{
+		return id;
 	}
 	
 	//===============================================================================
 	// Modifiers
 	//===============================================================================
 	
+	/**
+	 * Set by the ConstraintNetwork the variable is added to. 
+	 * @param id position of this variable in the network
+	 */
+	void setId(int id)
+	{
+		this.id = id;
+	}
+	
+	/**
+	 * Set by the ConstraintNetwork the variable is added to. Until then 
+	 * changes to the domain are not recorded on a trail or queued as events.
+	 * @param network network the variable was added to
+	 */
+	void setNetwork(ConstraintNetwork network)
+	{
+		this.network = network;
+		this.trail = network.getTrail();
+	}
+	
 	/** 
 	 * Used for local Search
 	 * @param val new assignment
 	 */
 	public void assignValue(int val)
 	{
-		setDomain(new Domain(val));
+		setDomain(domain.singleton(val));
 	}
 	
 	/**
 	 * Used for Backtracking. Adds the changed domain to the Trail.
+	 * In Delta mode only the values missing from d are recorded, so d 
+	 * must be a subset of the current domain.
 	 * @param d new domain
 	 */
 	public void updateDomain(Domain d)
 	{
-		methodModifiesDomain();
+		if(trail != null && trail.isDelta())
+		{
+			for(int i = domain.firstValue(); i != 0; i = domain.nextValue(i))
+			{
+				if(!d.contains(i))
+				{
+					trail.pushRemoval(this, i);
+				}
+			}
+		}
+		else
+		{
+			methodModifiesDomain();
+		}
 		
 		if(!domain.equals(d))
 		{
-			domain = d;
-			modified = true;
+			replaceDomain(d);
 		}
 	}
 	
@@ -166,8 +249,7 @@ public class Variable implements Iterable<Integer>
 	{
 		if(!domain.equals(d))
 		{
-			domain = d;
-			modified = true;
+			replaceDomain(d);
 		}
 	}
 	
@@ -176,15 +258,106 @@ public class Variable implements Iterable<Integer>
 	 * @param val value to remove
 	 */
 	public void removeValueFromDomain(int val) {
-		methodModifiesDomain();
-		domain.remove(val);
-		this.modified=domain.isModified();
+		if(domain.contains(val))
+		{
+			if(trail != null)
+			{
+				trail.pushRemoval(this, val);
+			}
+			domain.remove(val);
+			if(network != null)
+			{
+				network.valueRemoved(this, val);
+			}
+			markModified();
+		}
+	}
+	
+	/**
+	 * Difference. Removes every value held by <tt>words</tt> from the domain, 
+	 * a word at a time, recording each removal like {@link #removeValueFromDomain(int)}.
+	 * @param words values in the layout of {@link MultiWordBitDomain#getWords()}
+	 * @return the number of values removed
+	 */
+	public int removeValues(long[] words)
+	{
+		int removed = 0;
+		for(int w = 0; w < words.length; w++)
+		{
+			for(long m = words[w] & MultiWordBitDomain.word(domain, w); m != 0; m &= m - 1)
+			{
+				removeValueFromDomain((w << 6) + Long.numberOfTrailingZeros(m) + 1);
+				removed++;
+			}
+		}
+		return removed;
+	}
+	
+	/**
+	 * Intersection. Removes every value not held by <tt>words</tt> from the domain,
+	 * a word at a time, recording each removal like {@link #removeValueFromDomain(int)}.
+	 * @param words values in the layout of {@link MultiWordBitDomain#getWords()}
+	 * @return the number of values removed
+	 */
+	public int retainValues(long[] words)
+	{
+		int removed = 0;
+		for(int value = domain.firstValue(); value != 0; value = domain.nextValue(value))
+		{
+			int w = (value - 1) >>> 6;
+			long keep = w < words.length ? words[w] : 0L;
+			for(long m = MultiWordBitDomain.word(domain, w) & ~keep; m != 0; m &= m - 1)
+			{
+				removeValueFromDomain((w << 6) + Long.numberOfTrailingZeros(m) + 1);
+				removed++;
+			}
+			value = (w + 1) << 6;
+		}
+		return removed;
+	}
+	
+	/**
+	 * Puts a removed value back into the domain without changing the Trail.
+	 * Used by the Trail to undo a removal.
+	 * @param val value to put back
+	 */
+	void restoreValue(int val) {
+		domain.add(val);
+		if(network != null)
+		{
+			network.valueRestored(this, val);
+		}
+		markModified();
 	}
 	
 	//===============================================================================
 	// Helper Methods
 	//===============================================================================
 	
+	private void replaceDomain(Domain d)
+	{
+		Domain old = domain;
+		domain = d;
+		if(network != null)
+		{
+			network.domainReplaced(this, old, d);
+		}
+		markModified();
+	}
+	
+	/**
+	 * Sets the modified flag and tells the network, which queues this variable
+	 * and its constraints once each until they are polled.
+	 */
+	private void markModified()
+	{
+		modified = true;
+		if(network != null)
+		{
+			network.variableModified(this);
+		}
+	}
+	
 	public void methodModifiesDomain()
 	{
 		int newSize = size();
@@ -192,8 +365,11 @@ public class Variable implements Iterable<Integer>
 		{
 			oldSize = newSize;
 		}
-			
-		trail.push(this);
+		
+		if(trail != null)
+		{
+			trail.push(this);
+		}
 	}
 	
 	//===============================================================================
@@ -212,7 +388,7 @@ public class Variable implements Iterable<Integer>
 	{
 		//prints node stats
 		StringBuilder sb = new StringBuilder();
-		sb.append(" Name: "+name);
+		sb.append(" Name: "+getName());
 		sb.append("\tdomain: {");
 		for(Integer i : domain)
 		{
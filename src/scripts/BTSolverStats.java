@@ -10,6 +10,7 @@ import sudoku.SudokuBoardReader;
 import sudoku.SudokuFile;
 import cspSolver.BTSolver;
 import cspSolver.BTSolver.ConsistencyCheck;
+import cspSolver.BTSolver.NakedCheck;
 import cspSolver.BTSolver.ValueSelectionHeuristic;
 import cspSolver.BTSolver.VariableSelectionHeuristic;
 
@@ -19,6 +20,13 @@ public class BTSolverStats {
 	static ConsistencyCheck cc = ConsistencyCheck.None;
 	static ValueSelectionHeuristic valsh = ValueSelectionHeuristic.None;
 	static VariableSelectionHeuristic varsh = VariableSelectionHeuristic.None;
+	static NakedCheck nck = NakedCheck.None;
+	// 1 stops at the first solution; 2 or more counts solutions, e.g. 2 to check uniqueness
+	static long solutionLimit = 1;
+	
+	// puzzles solved at the same time, and how long each may take
+	static int numThreads = Runtime.getRuntime().availableProcessors();
+	static long timeoutMillis = 60000;
 	
 	public static List<SudokuFile> getPuzzlesFromFolder(File folder) {
 	    List<SudokuFile> puzzles = new ArrayList<SudokuFile>();
@@ -32,11 +40,33 @@ public class BTSolverStats {
 		return puzzles;
 	}
 	
-	public static runStats testSolver(BTSolver solver)
+	/**
+	 * Applies the configuration above to a solver.
+	 */
+	public static void configure(BTSolver solver)
 	{
 		solver.setConsistencyChecks(cc);
 		solver.setValueSelectionHeuristic(valsh);
 		solver.setVariableSelectionHeuristic(varsh);
+		solver.setNakedConsistency(nck);
+		solver.setSolutionLimit(solutionLimit);
+	}
+	
+	/**
+	 * @return statistics of a solver that has stopped, with its solution count in counting mode
+	 */
+	public static runStats statsOf(BTSolver solver)
+	{
+		if(solutionLimit > 1)
+		{
+			return new runStats(solver.getTimeTaken(), solver.getNumAssignments(), solver.getNumBacktracks(), solver.hasSolution(), solver.getNumSolutions());
+		}
+		return new runStats(solver.getTimeTaken(), solver.getNumAssignments(), solver.getNumBacktracks(), solver.hasSolution());
+	}
+	
+	public static runStats testSolver(BTSolver solver)
+	{
+		configure(solver);
 		
 		Thread t1 = new Thread(solver);
 		try
@@ -50,17 +80,7 @@ public class BTSolverStats {
 		}catch(InterruptedException e)
 		{
 		}
-		long runtime;
-		int numAssignments;
-		int numBacktracks;
-		boolean isSolution;
-		runStats rs;
-		runtime = solver.getTimeTaken();
-		numAssignments = solver.getNumAssignments();
-		numBacktracks = solver.getNumBacktracks();
-		isSolution = solver.hasSolution();
-		rs = new runStats(runtime, numAssignments, numBacktracks, isSolution);
-		return rs;
+		return statsOf(solver);
 	}
 	
 	public static void main(String[] args)
@@ -80,15 +100,10 @@ public class BTSolverStats {
 		}
 		
 		File folder = new File("ExampleSudokuFiles/");
-		List<SudokuFile> puzzles = getPuzzlesFromFolder(folder);
-		List<runStats> statistics = new ArrayList<runStats>();
-		
-		puzzles = puzzles.subList(0, 10);
-		for(SudokuFile sf : puzzles)
+		List<runStats> statistics = new BatchSolver(numThreads, timeoutMillis).solveFolder(folder);
+		for(runStats rs : statistics)
 		{
-			BTSolver solver = new BTSolver(sf);
-			statistics.add(testSolver(solver));
-			System.out.println(statistics.get(statistics.size()-1).toString());
+			System.out.println(rs.toString());
 		}
 		
 		try {
@@ -131,6 +146,11 @@ public class BTSolverStats {
 			fw.write("Consistency Check: " + cc + sep);
 			fw.write("ValueSelectionHeuristic: " + valsh + sep);
 			fw.write("VariableSelectionHeuristic: " + varsh + sep);
+			fw.write("NakedCheck: " + nck + sep);
+			if(solutionLimit > 1)
+			{
+				fw.write("Solution limit: " + solutionLimit + sep);
+			}
 			fw.write("Solution found for " + totalSuccessful + "/" + totalPuzzles + "puzzles" + sep);
 			fw.write("average runTime: " + (totalRunTime/totalSuccessful) + sep);
 			fw.write("average number of assignments per puzzle: " + (totalAssignments/totalSuccessful) + sep);
@@ -0,0 +1,276 @@
+package scripts;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import sudoku.SudokuBoardReader;
+import sudoku.SudokuFile;
+import cspSolver.BTSolver;
+
+/**
+ * Solves many puzzles at once on a fixed number of threads. Each puzzle gets its
+ * own {@link BTSolver}, configured as in {@link BTSolverStats}, whose deadline is
+ * set to the timeout, so that propagation stops along with the search. Puzzles are read from the input lazily, and no
+ * more than twice as many as there are threads are in flight at any time. A solver
+ * is reduced to its statistics as soon as it stops, so a long stream of puzzles
+ * does not have to fit in memory. Results come back in input order.
+ */
+public class BatchSolver {
+
+	//===============================================================================
+	// Properties
+	//===============================================================================
+
+	private final int numThreads;
+	private final long timeoutMillis;
+
+	//===============================================================================
+	// Constructors
+	//===============================================================================
+
+	/**
+	 * @param numThreads number of puzzles solved at the same time
+	 * @param timeoutMillis time each puzzle may run before its solver gives up
+	 */
+	public BatchSolver(int numThreads, long timeoutMillis)
+	{
+		if(numThreads < 1)
+		{
+			throw new IllegalArgumentException("Number of threads must be at least 1, got " + numThreads);
+		}
+		this.numThreads = numThreads;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	//===============================================================================
+	// Solver
+	//===============================================================================
+
+	/**
+	 * Solves every puzzle of a folder, in file name order. Files that are not puzzles are skipped.
+	 * @param folder folder to read
+	 * @return statistics of every puzzle, in file name order
+	 * @throws IllegalArgumentException if the folder does not exist or cannot be listed
+	 */
+	public List<runStats> solveFolder(File folder)
+	{
+		final File[] files = folder.listFiles();
+		if(files == null)
+		{
+			throw new IllegalArgumentException("Cannot list puzzle folder " + folder.getPath());
+		}
+		Arrays.sort(files);
+		return solveAll(new Iterable<SudokuFile>() {
+			@Override
+			public Iterator<SudokuFile> iterator() {
+				return new PuzzleIterator(files);
+			}
+		});
+	}
+
+	/**
+	 * A puzzle whose solver throws is reported as unsolved, and the rest of the batch carries on.
+	 * @param puzzles puzzles to solve, read one at a time as threads free up
+	 * @return statistics of every puzzle, in the order of <tt>puzzles</tt>
+	 */
+	public List<runStats> solveAll(Iterable<SudokuFile> puzzles)
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		Semaphore inFlight = new Semaphore(2 * numThreads);
+		Queue<Future<PuzzleResult>> pending = new ArrayDeque<Future<PuzzleResult>>();
+		List<runStats> statistics = new ArrayList<runStats>();
+		try {
+			for(SudokuFile sf : puzzles)
+			{
+				inFlight.acquire();
+				pending.add(executor.submit(new PuzzleTask(sf, inFlight)));
+				// runStats numbers puzzles as it is created, so create them in input order
+				while(!pending.isEmpty() && pending.peek().isDone())
+				{
+					statistics.add(statsOf(pending.poll()));
+				}
+			}
+			while(!pending.isEmpty())
+			{
+				statistics.add(statsOf(pending.poll()));
+			}
+		}catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}finally
+		{
+			executor.shutdownNow();
+		}
+		return statistics;
+	}
+
+	//===============================================================================
+	// Helper Methods
+	//===============================================================================
+
+	/**
+	 * Waits for a puzzle to finish.
+	 * @return statistics of the puzzle, unsolved if its solver threw
+	 */
+	private static runStats statsOf(Future<PuzzleResult> result) throws InterruptedException
+	{
+		try {
+			return result.get().toStats();
+		}catch (ExecutionException e)
+		{
+			System.err.println("Puzzle failed: " + e.getCause());
+			return new PuzzleResult().toStats();
+		}
+	}
+
+	/**
+	 * Statistics of a stopped solver, kept instead of the solver so that its network can be collected.
+	 */
+	private static class PuzzleResult {
+
+		private final long runtime;
+		private final int numAssignments;
+		private final int numBacktracks;
+		private final boolean isSolution;
+		// -1 when the solver was not asked to count solutions
+		private final long numSolutions;
+
+		/**
+		 * Result of a puzzle whose solver failed.
+		 */
+		PuzzleResult()
+		{
+			this.runtime = 0;
+			this.numAssignments = 0;
+			this.numBacktracks = 0;
+			this.isSolution = false;
+			this.numSolutions = -1;
+		}
+
+		PuzzleResult(BTSolver solver)
+		{
+			this.runtime = solver.getTimeTaken();
+			this.numAssignments = solver.getNumAssignments();
+			this.numBacktracks = solver.getNumBacktracks();
+			this.isSolution = solver.hasSolution();
+			this.numSolutions = BTSolverStats.solutionLimit > 1 ? solver.getNumSolutions() : -1;
+		}
+
+		runStats toStats()
+		{
+			if(numSolutions >= 0)
+			{
+				return new runStats(runtime, numAssignments, numBacktracks, isSolution, numSolutions);
+			}
+			return new runStats(runtime, numAssignments, numBacktracks, isSolution);
+		}
+	}
+
+	/**
+	 * Solves one puzzle on a pool thread until it is done or the timeout has passed.
+	 */
+	private class PuzzleTask implements Callable<PuzzleResult> {
+
+		private final SudokuFile sf;
+		private final Semaphore inFlight;
+
+		PuzzleTask(SudokuFile sf, Semaphore inFlight)
+		{
+			this.sf = sf;
+			this.inFlight = inFlight;
+		}
+
+		@Override
+		public PuzzleResult call()
+		{
+			long start = System.currentTimeMillis();
+			try {
+				BTSolver solver = new BTSolver(sf);
+				BTSolverStats.configure(solver);
+				// the propagators check the deadline too, so a long propagation pass stops on time
+				solver.setDeadline(start + timeoutMillis);
+				solver.solve();
+				return new PuzzleResult(solver);
+			}finally
+			{
+				inFlight.release();
+			}
+		}
+	}
+
+	/**
+	 * Reads the puzzle files one at a time, skipping files that are not puzzles.
+	 */
+	private static class PuzzleIterator implements Iterator<SudokuFile> {
+
+		private final File[] files;
+		private int index;
+		private SudokuFile next;
+
+		PuzzleIterator(File[] files)
+		{
+			this.files = files;
+			advance();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next != null;
+		}
+
+		@Override
+		public SudokuFile next()
+		{
+			SudokuFile sf = next;
+			advance();
+			return sf;
+		}
+
+		private void advance()
+		{
+			next = null;
+			while(next == null && index < files.length)
+			{
+				SudokuFile sf = SudokuBoardReader.readFile(files[index++].getPath());
+				if(sf.getN() != 0)
+				{
+					next = sf;
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		BatchSolver batch = new BatchSolver(numThreads, 60000);
+
+		long start = System.currentTimeMillis();
+		List<runStats> statistics = batch.solveFolder(new File("ExampleSudokuFiles/"));
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+
+		int totalSuccessful = 0;
+		for(runStats rs : statistics)
+		{
+			System.out.println(rs.toString());
+			if(rs.isSolution())
+			{
+				totalSuccessful++;
+			}
+		}
+		System.out.println("Solution found for " + totalSuccessful + "/" + statistics.size() + " puzzles on " + numThreads + " threads");
+		System.out.println("Throughput: " + (statistics.size() * 1000.0 / elapsed) + " puzzles per second");
+	}
+}
@@ -0,0 +1,66 @@
+package scripts;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import sudoku.SudokuFile;
+import cspSolver.DLXSolver;
+
+/**
+ * Runs the exact cover solver over the same puzzles as {@link BTSolverStats} and
+ * reports the same statistics, so the two can be compared side by side.
+ */
+public class DLXSolverStats {
+
+	public static runStats testSolver(DLXSolver solver)
+	{
+		Thread t1 = new Thread(solver);
+		try
+		{
+			t1.start();
+			t1.join(60000);
+			if(t1.isAlive())
+			{
+				t1.interrupt();
+			}
+		}catch(InterruptedException e)
+		{
+		}
+		return new runStats(solver.getTimeTaken(), solver.getNumAssignments(), solver.getNumBacktracks(), solver.hasSolution());
+	}
+
+	public static void main(String[] args)
+	{
+		String sep = System.getProperty("line.separator");
+		File folder = new File("ExampleSudokuFiles/");
+		List<SudokuFile> puzzles = BTSolverStats.getPuzzlesFromFolder(folder);
+		List<runStats> statistics = new ArrayList<runStats>();
+
+		for(SudokuFile sf : puzzles)
+		{
+			statistics.add(testSolver(new DLXSolver(sf)));
+			System.out.println(statistics.get(statistics.size()-1).toString());
+		}
+
+		long totalRunTime = 0;
+		long totalAssignments = 0;
+		long totalBackTracks = 0;
+		int totalSuccessful = 0;
+		for(runStats rs : statistics)
+		{
+			if(rs.isSolution())
+			{
+				totalRunTime += rs.getRuntime();
+				totalAssignments += rs.getNumAssignments();
+				totalBackTracks += rs.getNumBacktracks();
+				totalSuccessful++;
+			}
+		}
+		int successful = Math.max(1, totalSuccessful);
+		System.out.print("Solution found for " + totalSuccessful + "/" + statistics.size() + "puzzles" + sep);
+		System.out.print("average runTime: " + (totalRunTime/successful) + sep);
+		System.out.print("average number of assignments per puzzle: " + (totalAssignments/successful) + sep);
+		System.out.print("average number of backtracks per puzzle: " + (totalBackTracks/successful) + sep);
+	}
+}
@@ -7,6 +7,8 @@ public class runStats {
 	private int numAssignments;
 	private int numBacktracks;
 	private boolean isSolution;
+	// -1 when the solver was not asked to count solutions
+	private long numSolutions = -1;
 	
 	private String puzzleID;
 	
@@ -19,6 +21,15 @@ public class runStats {
 		this.puzzleID = "puzzle" + numStat++;
 	}
 	
+	/**
+	 * @param numSolutions solutions counted by a solver in counting mode, up to its limit
+	 */
+	public runStats(long runtime, int numAssignments, int numBacktracks, boolean isSolution, long numSolutions)
+	{
+		this(runtime, numAssignments, numBacktracks, isSolution);
+		this.numSolutions = numSolutions;
+	}
+	
 	public long getRuntime() {
 		return runtime;
 	}
@@ -38,11 +49,22 @@ public class runStats {
 		return isSolution;
 	}
 	
+	/**
+	 * @return number of solutions counted, -1 if they were not counted
+	 */
+	public long getNumSolutions() {
+		return numSolutions;
+	}
+	
 	public String toString()
 	{
 		StringBuilder sb = new StringBuilder();
 		sb.append(puzzleID + ":");
 		sb.append(runtime + " ms, " + numAssignments + " assignments, " + numBacktracks + " backtracks" + (isSolution?"":" Not a Solution"));
+		if(numSolutions >= 0)
+		{
+			sb.append(", " + numSolutions + " solutions");
+		}
 		return sb.toString();
 	}
 }
@@ -7,12 +7,23 @@ import java.util.Map.Entry;
 
 import cspSolver.Constraint;
 import cspSolver.ConstraintNetwork;
+import cspSolver.Domain;
 import cspSolver.Variable;
 
 
 public class Converter {
 
 	public static ConstraintNetwork SudokuFileToConstraintNetwork(SudokuFile sf)
+	{
+		return SudokuFileToConstraintNetwork(sf, Domain.defaultRepresentation(sf.getN()));
+	}
+
+	/**
+	 * @param sf puzzle to convert
+	 * @param representation how the domains of the variables are stored
+	 * @return constraint network with a variable per cell and a constraint per row, column and block
+	 */
+	public static ConstraintNetwork SudokuFileToConstraintNetwork(SudokuFile sf, Domain.Representation representation)
 	{
 		int [][] board = sf.getBoard();
 
@@ -40,7 +51,7 @@ public class Converter {
 
 				int block = (i/sf.getP() * sf.getP()) + j/sf.getQ();
 
-				variables.add(new Variable(domain, i, j, block));
+				variables.add(new Variable(Domain.create(representation, domain), i, j, block));
 			}
 		}
 